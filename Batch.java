@@ -0,0 +1,145 @@
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * This class encodes or decodes many files in one run, so a large number of
+ * small files costs one JVM start and one warm-up instead of one per file.
+ * The files are taken from a directory tree or a list file and processed in
+ * single file mode on a pool of worker threads. Every file is reported on
+ * standard error when it is done, and the totals at the end.
+ * <p>
+ * The outputs mirror the relative paths of the inputs under the target
+ * directory. Encoded files get the suffix SUFFIX, which decoding removes.
+ */
+class Batch {
+
+	// general final variables
+	static final String SUFFIX = ".huf"; // file name suffix of encoded files
+
+	private final HuffmanSubmit huffman; // the codec, shared by all workers
+	private final boolean encode; // true to encode, false to decode
+	private final int threads; // number of worker threads
+
+	// running totals
+	private final AtomicInteger done = new AtomicInteger(), failed = new AtomicInteger();
+	private final AtomicLong bytesIn = new AtomicLong(), bytesOut = new AtomicLong();
+	private final AtomicLong codecNanos = new AtomicLong(); // time spent in the codec, summed over all workers
+
+	// class constructor
+	Batch(HuffmanSubmit huffman, boolean encode, int threads) {
+		if(threads < 1) throw new IllegalArgumentException("Illegal number of threads " + threads);
+		this.huffman = huffman;
+		this.encode = encode;
+		this.threads = threads;
+	}
+
+	/**
+	 * Encodes or decodes every file of source into target. A file that fails
+	 * is reported and skipped, and the others go on.
+	 *
+	 * @param source directory whose files are processed, or a text file listing one file per line
+	 * @param target directory for the outputs, created if missing
+	 * @return number of files that failed
+	 * @throws IOException if the source cannot be listed
+	 */
+	int run(Path source, Path target) throws IOException {
+		List<Path> inputs;
+		Path base;
+		if(Files.isDirectory(source)) {
+			try(Stream<Path> files = Files.walk(source)) {
+				inputs = files.filter(Files::isRegularFile).collect(Collectors.toList());
+			}
+			base = source;
+		} else {
+			try(Stream<String> lines = Files.lines(source)) {
+				inputs = lines.filter(line -> !line.isBlank()).map(Paths::get).collect(Collectors.toList());
+			}
+			base = null;
+		}
+
+		long start = System.nanoTime();
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try {
+			pool.submit(() -> inputs.parallelStream().forEach(in -> process(in, output(in, base, target), target))).get();
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			pool.shutdown();
+		}
+
+		// aggregate throughput, against the wall clock and against the codec time alone
+		double seconds = (System.nanoTime() - start) / 1e9, codecSeconds = codecNanos.get() / 1e9;
+		long original = encode ? bytesIn.get() : bytesOut.get();
+		System.err.printf("%s %d files (%d failed) in %.3f s: %d -> %d bytes, %.1f files/s, %.1f MB/s, %.1f MB/s per thread in the codec%n",
+			encode ? "Encoded" : "Decoded", done.get(), failed.get(), seconds, bytesIn.get(), bytesOut.get(),
+			done.get() / seconds, original / seconds / (1 << 20), codecSeconds == 0 ? 0 : original / codecSeconds / (1 << 20));
+		return failed.get();
+	}
+
+	/**
+	 * Returns the output path of an input, mirroring its path relative to base.
+	 * Inputs from a list are mirrored with their root removed. The path is
+	 * normalized, so process can tell when ".." segments lead out of target.
+	 */
+	private Path output(Path in, Path base, Path target) {
+		Path relative = base != null ? base.relativize(in) : in.getRoot() != null ? in.getRoot().relativize(in) : in;
+		String name = relative.getFileName().toString();
+		if(encode) name += SUFFIX;
+		else name = name.endsWith(SUFFIX) && name.length() > SUFFIX.length() ? name.substring(0, name.length() - SUFFIX.length()) : name + ".out";
+		return target.resolve(relative).resolveSibling(name).normalize();
+	}
+
+	/**
+	 * Encodes or decodes one file and reports it. A file that fails is
+	 * counted and its output removed; no failure stops the other files. A
+	 * file whose output would lie outside target fails without being touched,
+	 * since that output could be the input itself or another file.
+	 */
+	private void process(Path in, Path out, Path target) {
+		if(!out.toAbsolutePath().normalize().startsWith(target.toAbsolutePath().normalize())) {
+			failed.incrementAndGet();
+			done.incrementAndGet();
+			System.err.println(in + ": failed, output " + out + " is outside " + target);
+			return;
+		}
+		try {
+			Files.createDirectories(out.toAbsolutePath().getParent());
+			long start = System.nanoTime();
+			if(encode) huffman.encodeContainer(in.toString(), out.toString());
+			else huffman.decodeContainer(in.toString(), out.toString());
+			long nanos = System.nanoTime() - start;
+
+			long inSize = Files.size(in), outSize = Files.size(out);
+			codecNanos.addAndGet(nanos);
+			bytesIn.addAndGet(inSize);
+			bytesOut.addAndGet(outSize);
+			done.incrementAndGet();
+			System.err.printf("%s -> %s: %d -> %d bytes in %.3f ms, %.1f MB/s%n", in, out, inSize, outSize,
+				nanos / 1e6, (encode ? inSize : outSize) / (nanos / 1e9) / (1 << 20));
+		} catch(IOException | RuntimeException e) {
+			failed.incrementAndGet();
+			done.incrementAndGet();
+			System.err.println(in + ": failed, " + e);
+			
+			// remove a partial output, so it is not taken for a result
+			try {
+				Files.deleteIfExists(out);
+			} catch(IOException | RuntimeException x) {
+				System.err.println(out + ": cannot remove partial output, " + x);
+			}
+		}
+	}
+}
@@ -0,0 +1,249 @@
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * This class measures the throughput and allocation rate of the codec on
+ * corpora of different entropy and size, so a performance change can be
+ * checked against numbers instead of a single run on alice30.txt.
+ * <p>
+ * Every benchmark is warmed up, then repeated until it has run for at least
+ * MEASURE_NANOS, and the median time of the repetitions is reported. The
+ * allocation is read from the per-thread counter of the JVM, so it covers the
+ * calling thread only. The output of every measured codec operation is
+ * checked to round-trip to its corpus once it is measured, so a change that
+ * breaks the codec fails the run instead of reporting its numbers. The
+ * corpora are generated into a temporary directory and deleted afterwards:
+ * text (alice30.txt repeated), random (uniform bytes), skewed (geometric
+ * distribution), single (one byte value) and logs (synthetic server log).
+ */
+class Benchmark {
+
+	// general final variables
+	private static final int[] SIZES = {1 << 10, 1 << 16, 1 << 20, 1 << 26, 1 << 30}; // corpus sizes in bytes
+	private static final String[] CORPORA = {"text", "random", "skewed", "single", "logs"};
+	private static final long WARMUP_NANOS = 500_000_000L; // time spent warming up each benchmark
+	private static final long MEASURE_NANOS = 1_000_000_000L; // least time spent measuring each benchmark
+	private static final int MIN_RUNS = 3; // least number of measured repetitions
+	private static final int CHUNK_SIZE = 1 << 20; // number of bytes generated at a time
+
+	private static final com.sun.management.ThreadMXBean THREADS =
+		(com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+	private final HuffmanSubmit huffman = new HuffmanSubmit();
+	private final Path dir; // directory of the corpora and outputs
+	private final byte[] text; // contents of alice30.txt
+	private final String filter; // part of the names of the benchmarks to run, or null for encode and decode
+
+	// class constructor
+	Benchmark(Path dir, byte[] text, String filter) {
+		this.dir = dir;
+		this.text = text;
+		this.filter = filter;
+	}
+
+	/**
+	 * One measured operation on a corpus file.
+	 */
+	private interface Op {
+		void run() throws IOException;
+	}
+
+	/**
+	 * Runs all benchmarks on one corpus file and prints a row for each.
+	 *
+	 * @param corpus name of the corpus
+	 * @param file the corpus file
+	 * @param size number of bytes in the file
+	 */
+	private void runAll(String corpus, Path file, long size) throws IOException {
+		String in = file.toString(), freq = dir.resolve("freq.txt").toString();
+		String enc = dir.resolve("corpus.enc").toString(), huf = dir.resolve("corpus.huf").toString();
+		String out = dir.resolve("corpus.out").toString();
+
+		// outputs of the encoders are prepared up front, so every decoder can run on its own
+		huffman.encode(in, enc, freq);
+		huffman.encode(in, huf);
+		long[] counts = new long[256];
+		try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+			for(MappedByteBuffer w : MappedFile.map(ch, FileChannel.MapMode.READ_ONLY, 0, size, 1)) Histogram.count(w, counts);
+		}
+		HuffmanTree tree = huffman.buildTree(counts, "Benchmark");
+
+		Op decode = () -> {
+			huffman.decode(enc, out, freq);
+			verify(file, out);
+		};
+		Op decodeContainer = () -> {
+			huffman.decodeContainer(huf, out);
+			verify(file, out);
+		};
+		report("encode", corpus, size, () -> huffman.encode(in, enc, freq), decode);
+		report("decode", corpus, size, () -> huffman.decode(enc, out, freq), () -> verify(file, out));
+		report("encode-container", corpus, size, () -> huffman.encodeContainer(in, huf), decodeContainer);
+		report("decode-container", corpus, size, () -> huffman.decodeContainer(huf, out), () -> verify(file, out));
+		report("buildTree", corpus, 0, () -> huffman.buildTree(counts, "Benchmark"), null);
+		report("getCode", corpus, 0, () -> huffman.getCode(tree, new long[256], new byte[256]), null);
+		report("BinaryIn.readBoolean", corpus, size, () -> {
+			BinaryIn bi = new BinaryIn(in);
+			for(long i = 8 * size; i > 0; i--) bi.readBoolean();
+		}, null);
+		report("BinaryIn.readChar", corpus, size, () -> {
+			BinaryIn bi = new BinaryIn(in);
+			for(long i = size; i > 0; i--) bi.readChar();
+		}, null);
+		report("BinaryOut.write(boolean)", corpus, size, () -> {
+			BinaryOut bo = new BinaryOut(OutputStream.nullOutputStream());
+			try(FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+				for(MappedByteBuffer w : MappedFile.map(ch, FileChannel.MapMode.READ_ONLY, 0, size, 1))
+					for(int i = 0; i < w.limit(); i++) {
+						int c = w.get(i);
+						for(int b = 7; b >= 0; b--) bo.write(((c >>> b) & 1) == 1);
+					}
+			}
+			bo.flush();
+		}, null);
+	}
+
+	/**
+	 * Throws if a decoded file differs from its corpus.
+	 *
+	 * @param expected the corpus file
+	 * @param actual name of the decoded file
+	 */
+	private static void verify(Path expected, String actual) throws IOException {
+		long mismatch = Files.mismatch(expected, Paths.get(actual));
+		if(mismatch >= 0) throw new IllegalStateException(actual + " differs from " + expected + " at byte " + mismatch);
+	}
+
+	/**
+	 * Measures an operation and prints its throughput and allocation, if the
+	 * filter selects it. The check runs once after the measurement, so it is
+	 * not timed.
+	 *
+	 * @param name name of the benchmark
+	 * @param corpus name of the corpus
+	 * @param size number of bytes processed by each run, or 0 if the operation does not depend on the size
+	 * @param op the operation
+	 * @param check verifies the output of the last run, or null if the operation has no output
+	 */
+	private void report(String name, String corpus, long size, Op op, Op check) throws IOException {
+		if(filter == null ? !name.equals("encode") && !name.equals("decode") : !name.contains(filter)) return;
+
+		// warm up
+		long start = System.nanoTime();
+		do op.run(); while(System.nanoTime() - start < WARMUP_NANOS);
+
+		// measure
+		long[] nanos = new long[16];
+		int runs = 0;
+		long bytes = THREADS.getCurrentThreadAllocatedBytes();
+		start = System.nanoTime();
+		long end = start;
+		while(runs < MIN_RUNS || end - start < MEASURE_NANOS) {
+			if(runs == nanos.length) nanos = Arrays.copyOf(nanos, 2 * runs);
+			long t = System.nanoTime();
+			op.run();
+			end = System.nanoTime();
+			nanos[runs++] = end - t;
+		}
+		bytes = THREADS.getCurrentThreadAllocatedBytes() - bytes;
+		Arrays.sort(nanos, 0, runs);
+		double median = nanos[runs / 2] / 1e9, perRun = (double) bytes / runs;
+
+		String throughput = size == 0 ? "-" : String.format("%.1f", size / median / (1 << 20));
+		System.out.printf("%-24s %-8s %10s %12.1f %10s %12.1f %14.0f%n", name, corpus, size == 0 ? "-" : Long.toString(size),
+			1 / median, throughput, bytes / ((end - start) / 1e9) / (1 << 20), perRun);
+		if(check != null) check.run();
+	}
+
+	/**
+	 * Writes a corpus file of the given size.
+	 *
+	 * @param corpus name of the corpus
+	 * @param size number of bytes to write
+	 * @return the corpus file
+	 */
+	private Path generate(String corpus, long size) throws IOException {
+		Path file = dir.resolve(corpus + ".bin");
+		Random random = new Random(size);
+		byte[] chunk = new byte[CHUNK_SIZE];
+		try(OutputStream os = new BufferedOutputStream(new FileOutputStream(file.toFile()))) {
+			for(long pos = 0; pos < size; pos += CHUNK_SIZE) {
+				int n = (int) Math.min(CHUNK_SIZE, size - pos);
+				if(corpus.equals("text")) {
+					for(int i = 0; i < n; i++) chunk[i] = text[(int) ((pos + i) % text.length)];
+				} else if(corpus.equals("random")) {
+					random.nextBytes(chunk);
+				} else if(corpus.equals("skewed")) {
+					for(int i = 0; i < n; i++) chunk[i] = (byte) ('a' + Integer.numberOfTrailingZeros(random.nextInt() | 1 << 25));
+				} else if(corpus.equals("single")) {
+					Arrays.fill(chunk, (byte) 'a');
+				} else {
+					int i = 0;
+					while(i < n) {
+						String line = String.format("2026-10-18 %02d:%02d:%02d.%03d %s [worker-%d] GET /api/items/%d %d %dms%n",
+							random.nextInt(24), random.nextInt(60), random.nextInt(60), random.nextInt(1000),
+							random.nextInt(20) == 0 ? "WARN" : "INFO", random.nextInt(16), random.nextInt(100000),
+							random.nextInt(50) == 0 ? 404 : 200, random.nextInt(500));
+						for(int j = 0; j < line.length() && i < n; j++) chunk[i++] = (byte) line.charAt(j);
+					}
+				}
+				os.write(chunk, 0, n);
+			}
+		}
+		return file;
+	}
+
+	/**
+	 * main method for benchmark runs, started from the directory holding
+	 * alice30.txt.
+	 *
+	 * args format:
+	 * [largest corpus size in bytes] [benchmark name filter]
+	 *
+	 * The largest size defaults to 64 MB; pass 1073741824 to include the
+	 * 1 GB corpora. The default filter runs encode and decode only; pass
+	 * a part of a name to run the matching benchmarks among encode, decode,
+	 * encode-container, decode-container, buildTree, getCode,
+	 * BinaryIn.readBoolean, BinaryIn.readChar and BinaryOut.write(boolean),
+	 * or "all" to run every benchmark.
+	 *
+	 * Example:
+	 * 1048576 BinaryIn
+	 */
+	public static void main(String[] args) throws IOException {
+		long maxSize = args.length > 0 ? Long.parseLong(args[0]) : 1 << 26;
+		String filter = args.length < 2 ? null : args[1].equals("all") ? "" : args[1];
+
+		Path dir = Files.createTempDirectory("huffman-bench");
+		Benchmark bench = new Benchmark(dir, Files.readAllBytes(Paths.get("alice30.txt")), filter);
+		System.out.printf("%-24s %-8s %10s %12s %10s %12s %14s%n", "benchmark", "corpus", "bytes", "ops/s", "MB/s", "alloc MB/s", "alloc B/op");
+
+		try {
+			for(int size : SIZES) {
+				if(size > maxSize) break;
+				for(String corpus : CORPORA) {
+					Path file = bench.generate(corpus, size);
+					bench.runAll(corpus, file, size);
+					Files.delete(file);
+				}
+			}
+		} finally {
+			for(File f : dir.toFile().listFiles()) f.delete();
+			Files.delete(dir);
+		}
+	}
+}
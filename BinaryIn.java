@@ -254,6 +254,41 @@ public final class BinaryIn {
     }
 
 
+   /**
+     * Reads up to {@code len} bytes from this binary input stream into an array.
+     * Reads directly from the underlying stream when byte-aligned, so this is much
+     * faster than calling {@code readByte()} in a loop.
+     *
+     * @param  b the array to read into
+     * @param  off the offset of the first byte to read
+     * @param  len the maximum number of bytes to read
+     * @return the number of bytes read, {@code 0} if this binary input stream is empty
+     */
+    public int read(byte[] b, int off, int len) {
+        if (isEmpty() || len == 0) return 0;
+
+        // not byte-aligned: read one byte at a time
+        if (n != 8) {
+            int count = 0;
+            while (count < len && !isEmpty())
+                b[off + count++] = readByte();
+            return count;
+        }
+
+        // byte-aligned: the buffered byte followed by a bulk read
+        b[off] = (byte) buffer;
+        int count = 1;
+        try {
+            int r = in.read(b, off + 1, len - 1);
+            if (r > 0) count += r;
+        }
+        catch (IOException e) {
+            e.printStackTrace();
+        }
+        fillBuffer();
+        return count;
+    }
+
    /**
      * Reads the next 16 bits from this binary input stream and return as a 16-bit short.
      *
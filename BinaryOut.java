@@ -184,6 +184,30 @@ public final class BinaryOut {
         writeByte(x & 0xff);
     }
 
+   /**
+     * Writes {@code len} bytes from the array starting at {@code off} to the
+     * binary output stream.
+     * @param b the bytes to write
+     * @param off the offset of the first byte to write
+     * @param len the number of bytes to write
+     */
+    public void write(byte[] b, int off, int len) {
+        // optimized if byte-aligned
+        if (n == 0) {
+            try {
+                out.write(b, off, len);
+            }
+            catch (IOException e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+
+        // otherwise write one byte at a time
+        for (int i = off; i < off + len; i++)
+            writeByte(b[i] & 0xff);
+    }
+
    /**
      * Writes the 32-bit int to the binary output stream.
      * @param x the {@code int} to write
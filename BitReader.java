@@ -0,0 +1,265 @@
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.NoSuchElementException;
+
+/**
+ * This class reads bits in bulk from a binary input. Bits are kept most
+ * significant bit first in a 64-bit window, which is refilled up to seven
+ * bytes at a time from a large byte buffer, so peeking, skipping and reading
+ * up to 56 bits at once costs a shift and at most one refill instead of one
+ * call per bit. The bit order is the same as BinaryIn.readBoolean().
+ * <p>
+ * The bits can come from a BinaryIn, an InputStream, a byte array, a
+ * ByteBuffer or a memory-mapped file. Streams are read in chunks of
+ * CHUNK_SIZE bytes.
+ */
+public final class BitReader {
+
+	// general final variables
+	public static final int MAX_BITS = 56; // most bits that can be peeked or read at once
+	private static final int CHUNK_SIZE = 1 << 16; // size of the refill buffer for streams
+
+	private final BinaryIn bin; // binary input source, or null
+	private final InputStream in; // stream source, or null
+	private final FileChannel ch; // mapped file source, or null
+	private ByteBuffer buf; // bytes not yet moved into the window
+	private long next; // position of the next window of the mapped file
+	private long limit; // number of bytes the sources may still provide
+	private long window; // unread bits, most significant bit first
+	private int avail; // number of valid bits in window
+	private long consumed; // number of bits read or skipped so far
+
+	/**
+	 * Initializes a bit reader that reads from a binary input stream.
+	 *
+	 * @param bi the binary input stream, positioned at a byte boundary
+	 */
+	public BitReader(BinaryIn bi) {
+		this(bi, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Initializes a bit reader that reads at most limit bytes from a binary
+	 * input stream. Nothing past those bytes is taken from the stream.
+	 *
+	 * @param bi the binary input stream, positioned at a byte boundary
+	 * @param limit the number of bytes that may be read
+	 */
+	public BitReader(BinaryIn bi, long limit) {
+		this.bin = bi;
+		this.in = null;
+		this.ch = null;
+		this.limit = limit;
+		this.buf = ByteBuffer.allocate(CHUNK_SIZE);
+		buf.limit(0);
+	}
+
+	/**
+	 * Initializes a bit reader that reads from an input stream.
+	 *
+	 * @param is the input stream
+	 */
+	public BitReader(InputStream is) {
+		this.bin = null;
+		this.in = is;
+		this.ch = null;
+		this.limit = Long.MAX_VALUE;
+		this.buf = ByteBuffer.allocate(CHUNK_SIZE);
+		buf.limit(0);
+	}
+
+	/**
+	 * Initializes a bit reader that reads len bytes of an array.
+	 *
+	 * @param b the array
+	 * @param off the offset of the first byte
+	 * @param len the number of bytes
+	 */
+	public BitReader(byte[] b, int off, int len) {
+		this(ByteBuffer.wrap(b, off, len));
+	}
+
+	/**
+	 * Initializes a bit reader that reads the remaining bytes of a buffer.
+	 * The position of the given buffer is not changed.
+	 *
+	 * @param bb the buffer
+	 */
+	public BitReader(ByteBuffer bb) {
+		this.bin = null;
+		this.in = null;
+		this.ch = null;
+		this.limit = 0;
+		this.buf = bb.slice();
+	}
+
+	/**
+	 * Initializes a bit reader that reads len bytes of a file starting at pos.
+	 * The file is memory-mapped one window at a time instead of being copied
+	 * into a buffer, so files of any size can be read.
+	 *
+	 * @param ch the channel of the file
+	 * @param pos the position of the first byte
+	 * @param len the number of bytes
+	 */
+	public BitReader(FileChannel ch, long pos, long len) {
+		this.bin = null;
+		this.in = null;
+		this.ch = ch;
+		this.next = pos;
+		this.limit = len;
+		this.buf = ByteBuffer.allocate(0);
+	}
+
+	/**
+	 * Moves as many whole bytes as fit from the buffer into the window.
+	 */
+	private void refill() {
+
+		// fast path: take up to seven bytes with one big-endian read
+		if(buf.remaining() >= 8) {
+			int p = buf.position();
+			window |= buf.getLong(p) >>> avail;
+			int bytes = (63 - avail) >>> 3;
+			buf.position(p + bytes);
+			avail += bytes << 3;
+			return;
+		}
+
+		// slow path at the end of the buffer: one byte at a time
+		while(avail <= MAX_BITS) {
+			if(!buf.hasRemaining() && !fetch()) break;
+			window |= (long) (buf.get() & 0xff) << (56 - avail);
+			avail += 8;
+		}
+	}
+
+	/**
+	 * Replaces the empty buffer with the next bytes of the source.
+	 *
+	 * @return true if there are more bytes; otherwise false
+	 */
+	private boolean fetch() {
+		if(limit == 0) return false;
+		try {
+
+			// map the next window of the file
+			if(ch != null) {
+				long len = Math.min(limit, MappedFile.WINDOW_SIZE);
+				buf = ch.map(FileChannel.MapMode.READ_ONLY, next, len);
+				next += len;
+				limit -= len;
+				return true;
+			}
+
+			// read the next chunk of the stream
+			buf.clear();
+			int want = (int) Math.min(buf.capacity(), limit);
+			int n = bin != null
+				? bin.read(buf.array(), 0, want)
+				: in.read(buf.array(), 0, want);
+			if(n <= 0) {
+				limit = 0;
+				buf.limit(0);
+				return false;
+			}
+			buf.limit(n);
+			limit -= n;
+			return true;
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Returns the next n bits without consuming them. Bits past the end of
+	 * the input read as 0.
+	 *
+	 * @param n number of bits, between 1 and MAX_BITS
+	 * @return the next n bits
+	 */
+	public long peekBits(int n) {
+		if(avail < n) refill();
+		return window >>> (64 - n);
+	}
+
+	/**
+	 * Consumes the next n bits.
+	 *
+	 * @param n number of bits, between 0 and MAX_BITS
+	 * @throws NoSuchElementException if fewer than n bits are left
+	 */
+	public void skipBits(int n) {
+		if(avail < n) {
+			refill();
+			if(avail < n) throw new NoSuchElementException("Reading from empty input stream");
+		}
+		window <<= n;
+		avail -= n;
+		consumed += n;
+	}
+
+	/**
+	 * Reads the next n bits.
+	 *
+	 * @param n number of bits, between 1 and MAX_BITS
+	 * @return the next n bits
+	 * @throws NoSuchElementException if fewer than n bits are left
+	 */
+	public long readBits(int n) {
+		long x = peekBits(n);
+		skipBits(n);
+		return x;
+	}
+
+	/**
+	 * Reads the next bit.
+	 *
+	 * @return the next bit as a boolean
+	 * @throws NoSuchElementException if no bits are left
+	 */
+	public boolean readBit() {
+		return readBits(1) == 1;
+	}
+
+	/**
+	 * Skips to the next byte boundary of the input.
+	 */
+	public void align() {
+		skipBits(avail & 7);
+	}
+
+	/**
+	 * Consumes all remaining bits of the input.
+	 */
+	public void skipAll() {
+		while(!isEmpty()) {
+			consumed += avail;
+			window = 0;
+			avail = 0;
+		}
+	}
+
+	/**
+	 * Returns true if all bits have been consumed.
+	 *
+	 * @return true if no bits are left; otherwise false
+	 */
+	public boolean isEmpty() {
+		if(avail == 0) refill();
+		return avail == 0;
+	}
+
+	/**
+	 * Returns the number of bits read or skipped so far.
+	 *
+	 * @return number of bits consumed
+	 */
+	public long position() {
+		return consumed;
+	}
+}
@@ -0,0 +1,109 @@
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * This class writes variable length codes to a binary output stream or a
+ * channel. Bits are collected most significant bit first in a 64-bit
+ * accumulator and stored as whole 32-bit words into a reusable byte buffer,
+ * which is written out in bulk when it fills up. The bit order is the same
+ * as writing each bit with BinaryOut.write(boolean).
+ */
+class BitWriter {
+
+	// general final variables
+	private static final int BUFFER_SIZE = 1 << 16; // size of the byte buffer, a multiple of 4
+
+	private final BinaryOut out; // destination of the written bytes, or null
+	private final WritableByteChannel ch; // destination of the written bytes, or null
+	private final ByteBuffer buf; // whole bytes waiting to be written
+	private long acc; // pending bits, most significant bit first
+	private int bits; // number of pending bits in acc, always below 32 between calls
+	private long written; // number of bits written so far
+
+	// class constructor for writing to a binary output stream
+	BitWriter(BinaryOut out) {
+		this.out = out;
+		this.ch = null;
+		this.buf = ByteBuffer.allocate(BUFFER_SIZE);
+	}
+
+	// class constructor for writing to a channel through a direct buffer,
+	// so the bytes are not copied again on their way to the channel
+	BitWriter(WritableByteChannel ch) {
+		this.out = null;
+		this.ch = ch;
+		this.buf = ByteBuffer.allocateDirect(BUFFER_SIZE);
+	}
+
+	/**
+	 * Writes the lowest length bits of code, most significant bit first.
+	 *
+	 * @param code the code to write; bits above length must be 0
+	 * @param length number of bits in the code, between 0 and 64
+	 */
+	void write(long code, int length) {
+		if(length > 32) {
+			write(code >>> 32, length - 32);
+			code &= 0xffffffffL;
+			length = 32;
+		}
+		if(length == 0) return;
+		acc |= code << (64 - bits - length);
+		bits += length;
+		written += length;
+
+		// store a whole word as soon as one is complete
+		if(bits >= 32) {
+			buf.putInt((int) (acc >>> 32));
+			acc <<= 32;
+			bits -= 32;
+			if(!buf.hasRemaining()) drain();
+		}
+	}
+
+	/**
+	 * Returns the number of bits written so far.
+	 *
+	 * @return number of bits written
+	 */
+	long written() {
+		return written;
+	}
+
+	/**
+	 * Writes all pending bits to the destination, padding 0s up to the next
+	 * whole byte. A binary output stream itself is not flushed.
+	 */
+	void flush() {
+		while(bits > 0) {
+			buf.put((byte) (acc >>> 56));
+			acc <<= 8;
+			bits -= 8;
+			if(!buf.hasRemaining()) drain();
+		}
+		acc = 0;
+		bits = 0;
+		written = (written + 7) & ~7L;
+		drain();
+	}
+
+	/**
+	 * Writes the byte buffer to the destination and empties it.
+	 */
+	private void drain() {
+		buf.flip();
+		if(out != null) {
+			out.write(buf.array(), 0, buf.limit());
+		} else {
+			try {
+				while(buf.hasRemaining()) ch.write(buf);
+			} catch(IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		buf.clear();
+	}
+}
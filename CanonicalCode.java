@@ -0,0 +1,314 @@
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * This class represents a canonical Huffman code, which is fully described
+ * by the code length of each symbol. Codes of the same length are assigned
+ * consecutive values in symbol order, so only the lengths have to be stored
+ * and the decoder can be built without rebuilding the Huffman tree.
+ */
+class CanonicalCode {
+
+	// general final variables
+	static final int LIMIT = 256; // number of symbols
+	static final int MAX_LENGTH = 63; // longest code that fits in a long
+	static final long MAX_FREQ = 1L << 55; // frequencies must stay below this, so sums of encoded bits fit in a long
+	static final int DEFAULT_MAX_LENGTH = TableDecoder.TABLE_BITS; // longest code resolved by a single table lookup
+	static final int RAW = 0, RUN_LENGTH = 1; // header modes
+
+	final int[] length; // code length of each symbol, 0 if unused
+	final long[] code; // canonical code of each symbol
+	final long[] first = new long[MAX_LENGTH + 2]; // first code of each length
+	final int[] count = new int[MAX_LENGTH + 2]; // number of codes of each length
+	final int[] offset = new int[MAX_LENGTH + 2]; // index of the first symbol of each length in sorted
+	final int[] sorted; // symbols sorted by code length, then by symbol
+	final int maxLength; // length of the longest code
+
+	// class constructor
+	CanonicalCode(int[] length) {
+		if(length.length != LIMIT) throw new IllegalArgumentException("Expected " + LIMIT + " code lengths");
+		this.length = length.clone();
+		this.code = new long[LIMIT];
+
+		// count the codes of each length
+		int used = 0, max = 0;
+		for(int s = 0; s < LIMIT; s++) {
+			int len = length[s];
+			if(len < 0 || len > MAX_LENGTH) throw new IllegalArgumentException("Illegal code length " + len);
+			if(len == 0) continue;
+			count[len]++;
+			used++;
+			if(len > max) max = len;
+		}
+		maxLength = max;
+
+		// reject lengths that cannot form a prefix code
+		long left = 1;
+		for(int len = 1; len <= max; len++) {
+			left = (left << 1) - count[len];
+			if(left < 0) throw new IllegalArgumentException("Code lengths are over-subscribed");
+			if(left > LIMIT) left = LIMIT + 1;
+		}
+
+		// assign the first code and the sorted position of each length
+		sorted = new int[used];
+		long next = 0;
+		for(int len = 1; len <= MAX_LENGTH; len++) {
+			next = (next + count[len-1]) << 1;
+			first[len] = next;
+			offset[len] = offset[len-1] + count[len-1];
+		}
+
+		// assign consecutive codes to the symbols of each length
+		int[] fill = offset.clone();
+		for(int s = 0; s < LIMIT; s++) {
+			int len = length[s];
+			if(len == 0) continue;
+			code[s] = first[len] + fill[len] - offset[len];
+			sorted[fill[len]++] = s;
+		}
+	}
+
+	/**
+	 * Builds the canonical code for the given frequencies, without any display.
+	 *
+	 * @param freq frequency of each symbol
+	 * @return canonical code with Huffman code lengths
+	 */
+	static CanonicalCode build(long[] freq) {
+		return new CanonicalCode(lengths(freq));
+	}
+
+	/**
+	 * Builds the canonical code for the given frequencies with no code longer
+	 * than maxLength bits. The Huffman code lengths are kept when they already
+	 * fit, so the limit only costs compression when it is actually hit.
+	 *
+	 * @param freq frequency of each symbol
+	 * @param maxLength longest allowed code length
+	 * @return canonical code with optimal lengths of at most maxLength bits
+	 */
+	static CanonicalCode build(long[] freq, int maxLength) {
+		CanonicalCode code = build(freq);
+		return code.maxLength <= maxLength ? code : new CanonicalCode(limitedLengths(freq, maxLength));
+	}
+
+	/**
+	 * Returns the Huffman code lengths for the given frequencies in O(n log n)
+	 * time without allocating a tree node per symbol. The symbols are sorted by
+	 * frequency once, and the tree is then built with the two-queue method:
+	 * leaves are taken in sorted order and merged nodes are created in order
+	 * of weight, so the two smallest roots are always at the front of one of
+	 * the two queues. The tree is kept in flat weight and parent arrays.
+	 * A single used symbol gets a one bit code.
+	 *
+	 * @param freq frequency of each symbol
+	 * @return array of code lengths indexed by symbol
+	 */
+	static int[] lengths(long[] freq) {
+		int[] length = new int[LIMIT];
+
+		// sort the used symbols by frequency, then by symbol
+		long[] sorted = new long[LIMIT];
+		int n = 0;
+		for(int s = 0; s < LIMIT; s++)
+			if(freq[s] > 0) sorted[n++] = sortKey(freq[s], s);
+		if(n == 0) return length;
+		if(n == 1) {
+			length[(int) (sorted[0] & 0xff)] = 1;
+			return length;
+		}
+		Arrays.sort(sorted, 0, n);
+
+		// leaves are nodes 0 to n-1 and merged nodes are n to 2n-2, both in order of weight
+		long[] weight = new long[2*n - 1];
+		int[] parent = new int[2*n - 1];
+		for(int i = 0; i < n; i++) weight[i] = sorted[i] >>> 8;
+		int leaf = 0, node = n;
+		for(int next = n; next < 2*n - 1; next++) {
+			int a = leaf < n && (node == next || weight[leaf] <= weight[node]) ? leaf++ : node++;
+			int b = leaf < n && (node == next || weight[leaf] <= weight[node]) ? leaf++ : node++;
+			weight[next] = weight[a] + weight[b];
+			parent[a] = next;
+			parent[b] = next;
+		}
+
+		// every parent comes after its children, so depths can be filled from the root down
+		int[] depth = new int[2*n - 1];
+		for(int i = 2*n - 3; i >= 0; i--) depth[i] = depth[parent[i]] + 1;
+		for(int i = 0; i < n; i++) length[(int) (sorted[i] & 0xff)] = depth[i];
+		return length;
+	}
+
+	/**
+	 * Returns optimal code lengths for the given frequencies under the
+	 * constraint that no code is longer than maxLength bits, using the
+	 * package-merge algorithm. There is one list of items per allowed length:
+	 * the first holds the leaves, and every further list merges the leaves
+	 * with packages of adjacent pairs of the list before it. The 2n-2 lightest
+	 * items of the last list form the cheapest set of codes, and the length of
+	 * each symbol is the number of lists in which its leaf is selected.
+	 * Runs in O(n maxLength) time after sorting.
+	 *
+	 * @param freq frequency of each symbol
+	 * @param maxLength longest allowed code length, between 1 and MAX_LENGTH
+	 * @return array of code lengths indexed by symbol
+	 * @throws IllegalArgumentException if the used symbols do not fit in maxLength bits
+	 */
+	static int[] limitedLengths(long[] freq, int maxLength) {
+		if(maxLength < 1 || maxLength > MAX_LENGTH) throw new IllegalArgumentException("Illegal maximum code length " + maxLength);
+		int[] length = new int[LIMIT];
+
+		// sort the used symbols by frequency, then by symbol
+		long[] sorted = new long[LIMIT];
+		int n = 0;
+		for(int s = 0; s < LIMIT; s++)
+			if(freq[s] > 0) sorted[n++] = sortKey(freq[s], s);
+		if(n == 0) return length;
+		if(n == 1) {
+			length[(int) (sorted[0] & 0xff)] = 1;
+			return length;
+		}
+		if(maxLength < 31 && n > 1 << maxLength)
+			throw new IllegalArgumentException(n + " symbols do not fit in codes of " + maxLength + " bits");
+		Arrays.sort(sorted, 0, n);
+
+		// item[j][i] is the leaf index of the i-th item of list j, or -1 for a package
+		int[][] item = new int[maxLength][];
+		long[] weight = new long[0];
+		for(int j = 0; j < maxLength; j++) {
+			int packages = weight.length / 2;
+			long[] next = new long[n + packages];
+			item[j] = new int[n + packages];
+			int leaf = 0, pack = 0;
+			for(int i = 0; i < next.length; i++) {
+				if(leaf < n && (pack == packages || sorted[leaf] >>> 8 <= weight[2*pack] + weight[2*pack + 1])) {
+					next[i] = sorted[leaf] >>> 8;
+					item[j][i] = leaf++;
+				} else {
+					next[i] = weight[2*pack] + weight[2*pack + 1];
+					item[j][i] = -1;
+					pack++;
+				}
+			}
+			weight = next;
+		}
+
+		// select the 2n-2 lightest items of the last list and follow the packages down
+		int take = 2*n - 2;
+		for(int j = maxLength - 1; j >= 0; j--) {
+			int packages = 0;
+			for(int i = 0; i < take; i++) {
+				if(item[j][i] < 0) packages++;
+				else length[(int) (sorted[item[j][i]] & 0xff)]++;
+			}
+			take = 2 * packages;
+		}
+		return length;
+	}
+
+	/**
+	 * Returns the key ordering a symbol by frequency, then by symbol.
+	 *
+	 * @throws IllegalArgumentException if the frequency reaches MAX_FREQ
+	 */
+	private static long sortKey(long freq, int s) {
+		if(freq >= MAX_FREQ) throw new IllegalArgumentException("Frequency " + freq + " is too large");
+		return freq << 8 | s;
+	}
+
+	/**
+	 * Returns the code lengths of every symbol in the given Huffman tree.
+	 * A tree with a single leaf gives its symbol a one bit code.
+	 *
+	 * @param tree the Huffman tree, or null for empty input
+	 * @return array of code lengths indexed by symbol
+	 */
+	static int[] lengths(HuffmanTree tree) {
+		int[] length = new int[LIMIT];
+		if(tree == null) return length;
+		if(HuffmanTree.isLeaf(tree.root)) {
+			length[tree.root] = 1;
+			return length;
+		}
+		int[] depth = tree.depths();
+		for(int s = 0; s < LIMIT; s++)
+			if(tree.freq[s] > 0) length[s] = depth[s];
+		return length;
+	}
+
+	/**
+	 * Returns the total number of bits needed to encode the given frequencies.
+	 *
+	 * @param freq frequency of each symbol
+	 * @return number of encoded bits
+	 */
+	long encodedBits(long[] freq) {
+		long bits = 0;
+		for(int s = 0; s < LIMIT; s++) bits += freq[s] * length[s];
+		return bits;
+	}
+
+	/**
+	 * Returns the number of bytes writeHeader writes.
+	 *
+	 * @return size of the header in bytes
+	 */
+	int headerSize() {
+		int runs = 0;
+		for(int s = 0; s < LIMIT; s++)
+			if(s == 0 || length[s] != length[s-1]) runs++;
+		return 2 * runs + 1 < LIMIT ? 2 * runs + 2 : LIMIT + 1;
+	}
+
+	/**
+	 * Writes the code lengths as a binary header. The lengths are run-length
+	 * coded as (run - 1, length) byte pairs when that is shorter than storing
+	 * all 256 lengths as single bytes.
+	 *
+	 * @param bo binary output to write the header to
+	 */
+	void writeHeader(BinaryOut bo) {
+		int size = headerSize();
+		if(size <= LIMIT) {
+			bo.write((byte) RUN_LENGTH);
+			bo.write((byte) (size / 2 - 2));
+			int start = 0;
+			for(int s = 1; s <= LIMIT; s++) {
+				if(s < LIMIT && length[s] == length[start]) continue;
+				bo.write((byte) (s - start - 1));
+				bo.write((byte) length[start]);
+				start = s;
+			}
+		} else {
+			bo.write((byte) RAW);
+			for(int s = 0; s < LIMIT; s++) bo.write((byte) length[s]);
+		}
+	}
+
+	/**
+	 * Reads a header written by writeHeader and returns the canonical code.
+	 *
+	 * @param bi binary input positioned at the header
+	 * @return canonical code described by the header
+	 * @throws IllegalArgumentException if the header is malformed
+	 * @throws NoSuchElementException if the input ends inside the header
+	 */
+	static CanonicalCode readHeader(BinaryIn bi) {
+		int[] length = new int[LIMIT];
+		int mode = bi.readChar();
+		if(mode == RUN_LENGTH) {
+			int runs = bi.readChar() + 1, s = 0;
+			for(int r = 0; r < runs; r++) {
+				int run = bi.readChar() + 1, len = bi.readChar();
+				if(s + run > LIMIT) throw new IllegalArgumentException("Code length runs exceed " + LIMIT + " symbols");
+				for(int i = 0; i < run; i++) length[s++] = len;
+			}
+			if(s != LIMIT) throw new IllegalArgumentException("Code length runs cover only " + s + " symbols");
+		} else if(mode == RAW) {
+			for(int s = 0; s < LIMIT; s++) length[s] = bi.readChar();
+		} else throw new IllegalArgumentException("Unknown code length header mode " + mode);
+		return new CanonicalCode(length);
+	}
+}
@@ -0,0 +1,205 @@
+
+/**
+ * This class describes the header of the single file container format,
+ * which holds everything needed to decode a file in one place.
+ *
+ * Version 1 (one stream):
+ * magic number (4 bytes), format version (1 byte), original length (8 bytes),
+ * code length header, payload length (8 bytes), payload, CRC32C of the
+ * original data (4 bytes).
+ *
+ * Version 2 (independent blocks):
+ * magic number (4 bytes), format version (1 byte), original length (8 bytes),
+ * code length header, block size (4 bytes), block count (4 bytes), block index
+ * of (compressed length, CRC32C of the original block) pairs (8 bytes each),
+ * payload. Every block holds blockSize original bytes, except the last, and
+ * starts on a byte boundary, so blocks can be encoded and decoded separately.
+ *
+ * Version 3 (adaptive blocks):
+ * the layout of version 2 without the code length header. Every block starts
+ * with a block type (1 byte): a coded block is followed by its own code length
+ * header and its payload, a reused block by a payload with the code of the
+ * nearest coded block before it, and a raw block by its original bytes.
+ *
+ * The header is validated against the size of the file before any of the
+ * payload is read, so truncated or foreign files are rejected right away.
+ */
+class Container {
+
+	// general final variables
+	static final int MAGIC = 0x48554646; // "HUFF"
+	static final int STREAM = 1; // format version with a single stream
+	static final int BLOCKS = 2; // format version with independent blocks
+	static final int ADAPTIVE = 3; // format version with a code per block
+	static final int RAW_BLOCK = 0; // block type of a version 3 block stored as is
+	static final int CODED_BLOCK = 1; // block type of a version 3 block with its own code
+	static final int REUSED_BLOCK = 2; // block type of a version 3 block with the previous code
+	static final int TRAILER_SIZE = 4; // size of the CRC32C trailer of version 1 in bytes
+
+	final int version; // format version
+	final long length; // number of bytes in the original file
+	final CanonicalCode code; // canonical code of the payload, null in version 3
+	final long payloadLength; // number of bytes in the payload
+	final int blockSize; // number of original bytes per block, versions 2 and 3 only
+	final int[] blockLength; // number of compressed bytes of each block, versions 2 and 3 only
+	final int[] blockCrc; // CRC32C of the original bytes of each block, versions 2 and 3 only
+
+	// class constructor for a single stream
+	Container(long length, CanonicalCode code, long payloadLength) {
+		this.version = STREAM;
+		this.length = length;
+		this.code = code;
+		this.payloadLength = payloadLength;
+		this.blockSize = 0;
+		this.blockLength = null;
+		this.blockCrc = null;
+	}
+
+	// class constructor for independent blocks
+	Container(long length, CanonicalCode code, int blockSize, int[] blockLength, int[] blockCrc) {
+		this(BLOCKS, length, code, blockSize, blockLength, blockCrc);
+	}
+
+	// class constructor for adaptive blocks, which carry their own codes
+	Container(long length, int blockSize, int[] blockLength, int[] blockCrc) {
+		this(ADAPTIVE, length, null, blockSize, blockLength, blockCrc);
+	}
+
+	private Container(int version, long length, CanonicalCode code, int blockSize, int[] blockLength, int[] blockCrc) {
+		this.version = version;
+		this.length = length;
+		this.code = code;
+		this.blockSize = blockSize;
+		this.blockLength = blockLength;
+		this.blockCrc = blockCrc;
+		long sum = 0;
+		for(int b = 0; b < blockLength.length; b++) sum += blockLength[b];
+		this.payloadLength = sum;
+	}
+
+	/**
+	 * Returns the number of blocks needed for the given length.
+	 *
+	 * @param length number of original bytes
+	 * @param blockSize number of original bytes per block
+	 * @return number of blocks
+	 * @throws IllegalArgumentException if there would be more than Integer.MAX_VALUE blocks
+	 */
+	static int blockCount(long length, int blockSize) {
+		long count = (length + blockSize - 1) / blockSize;
+		if(count > Integer.MAX_VALUE) throw new IllegalArgumentException("Block size " + blockSize + " is too small");
+		return (int) count;
+	}
+
+	/**
+	 * Returns the number of original bytes in the given block.
+	 *
+	 * @param block index of the block
+	 * @return number of original bytes in the block
+	 */
+	int blockBytes(int block) {
+		return (int) Math.min(blockSize, length - (long) block * blockSize);
+	}
+
+	/**
+	 * Returns the number of bytes in the header, up to the payload.
+	 *
+	 * @return size of the header in bytes
+	 */
+	long headerSize() {
+		if(version == STREAM) return 4 + 1 + 8 + code.headerSize() + 8;
+		return 4 + 1 + 8 + (code == null ? 0 : code.headerSize()) + 4 + 4 + 8L * blockLength.length;
+	}
+
+	/**
+	 * Writes the header, up to the payload.
+	 *
+	 * @param bo binary output to write the header to
+	 */
+	void write(BinaryOut bo) {
+		bo.write(MAGIC);
+		bo.write((byte) version);
+		bo.write(length);
+		if(code != null) code.writeHeader(bo);
+		if(version == STREAM) {
+			bo.write(payloadLength);
+			return;
+		}
+		bo.write(blockSize);
+		bo.write(blockLength.length);
+		for(int b = 0; b < blockLength.length; b++) {
+			bo.write(blockLength[b]);
+			bo.write(blockCrc[b]);
+		}
+	}
+
+	/**
+	 * Reads and validates a header written by write.
+	 *
+	 * @param bi binary input positioned at the start of the file
+	 * @param fileSize size of the whole file in bytes
+	 * @return header of the file
+	 * @throws IllegalArgumentException if the file is not a valid container
+	 */
+	static Container read(BinaryIn bi, long fileSize) {
+		if(fileSize < 4 + 1 + 8 || bi.readInt() != MAGIC)
+			throw new IllegalArgumentException("Not a Huffman container file");
+		int version = bi.readChar();
+		if(version != STREAM && version != BLOCKS && version != ADAPTIVE)
+			throw new IllegalArgumentException("Unsupported container version " + version);
+
+		long length = bi.readLong();
+		if(length < 0) throw new IllegalArgumentException("Illegal original length " + length);
+		CanonicalCode code = null;
+		if(version != ADAPTIVE) {
+			code = CanonicalCode.readHeader(bi);
+			if(length > 0 && code.maxLength == 0)
+				throw new IllegalArgumentException("Container has no code for its data");
+		}
+
+		Container c;
+		if(version == STREAM) {
+			c = new Container(length, code, bi.readLong());
+			if(c.payloadLength < 0 || c.headerSize() + c.payloadLength + TRAILER_SIZE != fileSize)
+				throw new IllegalArgumentException("Container is truncated or has trailing data");
+			checkPayload(length, c.payloadLength, code);
+			return c;
+		}
+
+		// read and check the block index
+		int blockSize = bi.readInt(), blocks = bi.readInt();
+		if(blockSize <= 0 || blocks != blockCount(length, blockSize))
+			throw new IllegalArgumentException("Block index does not match the original length");
+		if(4 + 1 + 8 + (code == null ? 0 : code.headerSize()) + 4 + 4 + 8L * blocks > fileSize)
+			throw new IllegalArgumentException("Container is truncated or has trailing data");
+		int[] blockLength = new int[blocks], blockCrc = new int[blocks];
+		for(int b = 0; b < blocks; b++) {
+			blockLength[b] = bi.readInt();
+			blockCrc[b] = bi.readInt();
+			if(blockLength[b] < 0) throw new IllegalArgumentException("Illegal block length " + blockLength[b]);
+		}
+		c = new Container(version, length, code, blockSize, blockLength, blockCrc);
+		if(c.headerSize() + c.payloadLength != fileSize)
+			throw new IllegalArgumentException("Container is truncated or has trailing data");
+
+		// the codes of adaptive blocks are only known once each block is read
+		if(version == ADAPTIVE) {
+			for(int b = 0; b < blocks; b++)
+				if(blockLength[b] < 1) throw new IllegalArgumentException("Block " + b + " has no block type");
+			return c;
+		}
+		for(int b = 0; b < blocks; b++) checkPayload(c.blockBytes(b), blockLength[b], code);
+		return c;
+	}
+
+	/**
+	 * Checks that a payload of the given length can hold the given number of
+	 * symbols, which take at least one bit and at most maxLength bits each.
+	 *
+	 * @throws IllegalArgumentException if it cannot
+	 */
+	private static void checkPayload(long symbols, long payloadLength, CanonicalCode code) {
+		if(symbols > 8 * payloadLength || (double) symbols * code.maxLength < 8.0 * (payloadLength - 1))
+			throw new IllegalArgumentException("Payload length does not match the original length");
+	}
+}
@@ -0,0 +1,66 @@
+
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+
+/**
+ * This class decodes records written by an Encoder with the same canonical
+ * code. The decoding table is built once when the decoder is built and is
+ * only read afterwards, so a decoder can be shared by any number of threads
+ * without locking, and decoding a record costs only the record itself.
+ * Decoders for many codes are kept by a DecoderCache.
+ */
+public final class Decoder {
+
+	private final TableDecoder decoder; // decoding table of the code
+	private final int id; // hash of the code
+
+	// class constructor
+	Decoder(CanonicalCode code) {
+		this.decoder = new TableDecoder(code);
+		this.id = SharedTable.id(code);
+	}
+
+	/**
+	 * Returns the id of the code, which every record of this decoder carries.
+	 *
+	 * @return id of the code
+	 */
+	public int id() {
+		return id;
+	}
+
+	/**
+	 * Returns the id of the code a record was encoded with.
+	 *
+	 * @param record an encoded record
+	 * @return id of its code
+	 * @throws IllegalArgumentException if the record is too short
+	 */
+	public static int tableId(byte[] record) {
+		if(record.length < Encoder.RECORD_HEADER_SIZE) throw new IllegalArgumentException("Record of " + record.length + " bytes is truncated");
+		return ByteBuffer.wrap(record).getInt(0);
+	}
+
+	/**
+	 * Decodes a record written by an encoder with the same code.
+	 *
+	 * @param record an encoded record
+	 * @return the decoded bytes
+	 * @throws IllegalArgumentException if the record belongs to another code or is malformed
+	 */
+	public byte[] decode(byte[] record) {
+		int recordId = tableId(record);
+		if(recordId != id)
+			throw new IllegalArgumentException(String.format("Record of table %08x cannot be decoded with table %08x", recordId, id));
+		int len = ByteBuffer.wrap(record).getInt(4);
+		if(len < 0 || len > 8L * (record.length - Encoder.RECORD_HEADER_SIZE))
+			throw new IllegalArgumentException("Illegal record length " + len);
+		byte[] data = new byte[len];
+		try {
+			decoder.decode(new BitReader(record, Encoder.RECORD_HEADER_SIZE, record.length - Encoder.RECORD_HEADER_SIZE), data, 0, len);
+		} catch(NoSuchElementException e) {
+			throw new IllegalArgumentException("Record is truncated", e);
+		}
+		return data;
+	}
+}
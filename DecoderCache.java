@@ -0,0 +1,88 @@
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * This class keeps the decoders of the most recently used shared tables, so
+ * a server decoding concurrent requests builds the decoder of a table once
+ * and then decodes with no setup per request. Decoders are keyed by the id
+ * each record carries, the hash of its code, and tables missing from the
+ * cache are loaded from a table directory. Once capacity decoders are
+ * cached, the least recently used one is dropped.
+ * <p>
+ * Lookups are synchronized, but loading a table and decoding are not, so
+ * threads only wait for each other while the cache itself is touched.
+ */
+public class DecoderCache {
+
+	private final Path tableDir; // directory of the shared tables
+	private final Map<Integer, Decoder> decoders; // cached decoders in access order
+
+	/**
+	 * Initializes an empty cache.
+	 *
+	 * @param tableDir directory the shared tables are loaded from
+	 * @param capacity largest number of cached decoders, at least 1
+	 */
+	public DecoderCache(Path tableDir, int capacity) {
+		if(capacity < 1) throw new IllegalArgumentException("Illegal cache capacity " + capacity);
+		this.tableDir = tableDir;
+		this.decoders = new LinkedHashMap<Integer, Decoder>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Integer, Decoder> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the decoder of a table, loading the table if it is not cached.
+	 * Two threads missing the same table at once may both load it, and the
+	 * first decoder stored is kept.
+	 *
+	 * @param id id of the table
+	 * @return decoder of the table
+	 * @throws IOException if the table cannot be read
+	 * @throws IllegalArgumentException if the table file is malformed
+	 */
+	public Decoder get(int id) throws IOException {
+		Decoder decoder;
+		synchronized(decoders) {
+			decoder = decoders.get(id);
+		}
+		if(decoder != null) return decoder;
+
+		decoder = SharedTable.load(tableDir, id).decoder();
+		synchronized(decoders) {
+			Decoder cached = decoders.putIfAbsent(id, decoder);
+			return cached != null ? cached : decoder;
+		}
+	}
+
+	/**
+	 * Decodes a record with the decoder of the table whose id it carries.
+	 *
+	 * @param record a record written by an Encoder
+	 * @return the decoded bytes
+	 * @throws IOException if the table cannot be read
+	 * @throws IllegalArgumentException if the record or its table is malformed
+	 */
+	public byte[] decode(byte[] record) throws IOException {
+		return get(Decoder.tableId(record)).decode(record);
+	}
+
+	/**
+	 * Returns the number of cached decoders.
+	 *
+	 * @return number of cached decoders
+	 */
+	public int size() {
+		synchronized(decoders) {
+			return decoders.size();
+		}
+	}
+}
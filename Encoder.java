@@ -0,0 +1,82 @@
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class encodes records with one fixed canonical code. The code arrays
+ * are copied once when the encoder is built and never change afterwards, so
+ * an encoder can be shared by any number of threads without locking, and
+ * encoding a record costs only the record itself.
+ * <p>
+ * Record layout: table id (4 bytes), original length (4 bytes), payload. The
+ * table id is the hash of the code, see SharedTable, and tells a decoder or
+ * a DecoderCache which code to decode the record with.
+ */
+public final class Encoder {
+
+	// general final variables
+	static final int RECORD_HEADER_SIZE = 8; // size of the table id and length of a record in bytes
+
+	private final long[] code; // code of each byte, most significant bit first
+	private final int[] length; // code length of each byte, 0 if it has no code
+	private final int id; // hash of the code
+
+	// class constructor
+	Encoder(CanonicalCode code) {
+		this.code = code.code.clone();
+		this.length = code.length.clone();
+		this.id = SharedTable.id(code);
+	}
+
+	/**
+	 * Returns the id of the code, which every record of this encoder carries.
+	 *
+	 * @return id of the code
+	 */
+	public int id() {
+		return id;
+	}
+
+	/**
+	 * Encodes len bytes of an array as a record.
+	 *
+	 * @param data bytes to encode
+	 * @param off position of the first byte
+	 * @param len number of bytes
+	 * @return the encoded record
+	 * @throws IllegalArgumentException if a byte has no code or the record would be too long
+	 */
+	public byte[] encode(byte[] data, int off, int len) {
+
+		// size the record exactly, so it is allocated once
+		long bits = 0;
+		for(int i = off; i < off + len; i++) {
+			int l = length[data[i] & 0xff];
+			if(l == 0) throw new IllegalArgumentException("Byte " + (data[i] & 0xff) + " has no code in table " + String.format("%08x", id));
+			bits += l;
+		}
+		if(RECORD_HEADER_SIZE + (bits + 7) / 8 > Integer.MAX_VALUE - 8)
+			throw new IllegalArgumentException("Record of " + len + " bytes is too long");
+		byte[] record = new byte[RECORD_HEADER_SIZE + (int) ((bits + 7) / 8)];
+		ByteBuffer.wrap(record).putInt(id).putInt(len);
+
+		// pack the codes most significant bit first, as BitWriter does
+		long acc = 0;
+		int n = 0, pos = RECORD_HEADER_SIZE;
+		for(int i = off; i < off + len; i++) {
+			int c = data[i] & 0xff, l = length[c];
+			long v = code[c];
+			if(l > 32) {
+				acc = acc << (l - 32) | v >>> 32;
+				n += l - 32;
+				for(; n >= 8; n -= 8) record[pos++] = (byte) (acc >>> (n - 8));
+				v &= 0xffffffffL;
+				l = 32;
+			}
+			acc = acc << l | v;
+			n += l;
+			for(; n >= 8; n -= 8) record[pos++] = (byte) (acc >>> (n - 8));
+		}
+		if(n > 0) record[pos] = (byte) (acc << (8 - n));
+		return record;
+	}
+}
@@ -0,0 +1,64 @@
+
+import java.util.List;
+
+import javax.swing.JFrame;
+
+/**
+ * This class creates a window for displaying the Huffman tree.
+ * Implements JFrame class.
+ * 
+ * @author Kyounghan Min
+ *
+ */
+class Frame extends JFrame {
+	
+	private static final long serialVersionUID = 1L;
+	private Panel P = new Panel(null, "Tree is Empty");
+	
+	// class contructor
+	Frame() {
+		setSize(1300,900);
+		setVisible(true);
+		setLocationRelativeTo(null);
+		setResizable(false);
+		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+		setContentPane(P);
+		repaint();
+		revalidate();
+	}
+	
+	/**
+	 * Updates the Huffman trees and frame title to be displayed.
+	 * 
+	 * @param forest list of Huffman tree roots to display
+	 * @param title title for the display
+	 */
+	public void updateContent(List<Node> forest, String title) {
+		P.setContent(forest, title);
+	}
+	
+	/**
+	 * Updates the window but not the contents of the 
+	 * Huffman trees and frame title themselves.
+	 */
+	public void update() {
+		P.repaint();
+		P.revalidate();
+		repaint();
+		revalidate();
+	}
+	
+	/**
+	 * Shows UI components.
+	 */
+	public void showComponents() {
+		P.showComponents();
+	}
+	
+	/**
+	 * Hides UI components.
+	 */
+	public void hideComponents() {
+		P.hideComponents();
+	}
+}
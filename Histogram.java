@@ -0,0 +1,82 @@
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * This class counts the bytes of a chunk of data. A single table of counts
+ * is slow on runs of the same byte, because every increment has to wait for
+ * the previous store to the same counter. The bytes are therefore spread
+ * over four interleaved tables, which are only added up at the end, so
+ * consecutive increments never touch the same counter. Every call works on
+ * its own tables, so different chunks can be counted in parallel and their
+ * results merged.
+ */
+class Histogram {
+
+	// general final variables
+	static final int LIMIT = 256; // number of byte values
+
+	/**
+	 * Adds the counts of len bytes of an array to freq.
+	 *
+	 * @param data bytes to count
+	 * @param off position of the first byte
+	 * @param len number of bytes
+	 * @param freq frequency of each byte value, incremented in place
+	 * @return freq
+	 */
+	static long[] count(byte[] data, int off, int len, long[] freq) {
+		int[] c0 = new int[LIMIT], c1 = new int[LIMIT], c2 = new int[LIMIT], c3 = new int[LIMIT];
+		int i = off, end = off + len;
+		for(; i + 4 <= end; i += 4) {
+			c0[data[i] & 0xff]++;
+			c1[data[i+1] & 0xff]++;
+			c2[data[i+2] & 0xff]++;
+			c3[data[i+3] & 0xff]++;
+		}
+		for(; i < end; i++) c0[data[i] & 0xff]++;
+		merge(freq, c0, c1, c2, c3);
+		return freq;
+	}
+
+	/**
+	 * Adds the counts of the remaining bytes of a buffer to freq. The bytes
+	 * are read eight at a time as longs, which is fast on direct and
+	 * memory-mapped buffers. The position of the buffer is not changed.
+	 *
+	 * @param data bytes to count
+	 * @param freq frequency of each byte value, incremented in place
+	 * @return freq
+	 */
+	static long[] count(ByteBuffer data, long[] freq) {
+		if(data.hasArray())
+			return count(data.array(), data.arrayOffset() + data.position(), data.remaining(), freq);
+
+		// byte order does not matter for counting, so use the fastest one
+		ByteBuffer buf = data.duplicate().order(ByteOrder.nativeOrder());
+		int[] c0 = new int[LIMIT], c1 = new int[LIMIT], c2 = new int[LIMIT], c3 = new int[LIMIT];
+		int i = buf.position(), end = buf.limit();
+		long v;
+		for(; i + 8 <= end; i += 8) {
+			v = buf.getLong(i);
+			c0[(int) v & 0xff]++;
+			c1[(int) (v >>> 8) & 0xff]++;
+			c2[(int) (v >>> 16) & 0xff]++;
+			c3[(int) (v >>> 24) & 0xff]++;
+			c0[(int) (v >>> 32) & 0xff]++;
+			c1[(int) (v >>> 40) & 0xff]++;
+			c2[(int) (v >>> 48) & 0xff]++;
+			c3[(int) (v >>> 56)]++;
+		}
+		for(; i < end; i++) c0[buf.get(i) & 0xff]++;
+		merge(freq, c0, c1, c2, c3);
+		return freq;
+	}
+
+	/**
+	 * Adds the interleaved tables to freq.
+	 */
+	private static void merge(long[] freq, int[] c0, int[] c1, int[] c2, int[] c3) {
+		for(int s = 0; s < LIMIT; s++) freq[s] += (long) c0[s] + c1[s] + c2[s] + c3[s];
+	}
+}
@@ -0,0 +1,177 @@
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32C;
+
+/**
+ * This class reads a stream written by HuffmanOutputStream from an underlying
+ * input stream and returns the decompressed bytes, so compressed data from
+ * sockets or memory can be read without a temporary file. Channels can be
+ * used through java.nio.channels.Channels.newInputStream.
+ * <p>
+ * One frame is decoded at a time, so memory use is bounded by the block size
+ * of the stream. Every frame is verified against its checksum before any of
+ * its bytes are returned. The underlying stream is read for exactly the
+ * bytes of each frame and never ahead, so a frame of a live stream is
+ * returned as soon as its last byte arrives.
+ */
+public class HuffmanInputStream extends InputStream {
+
+	private final InputStream in; // the compressed input
+	private final byte[] word = new byte[4]; // bytes of the last int read
+	private byte[] payload = new byte[0]; // compressed bytes of the current frame
+	private byte[] block = new byte[0]; // decoded bytes of the current frame
+	private int pos, n; // position of the next byte in block, and number of bytes in block
+	private boolean eof; // true once the end of the stream is reached
+	private boolean closed;
+	private TableDecoder decoder; // decoder of the previous frame, reused if the code repeats
+	private CanonicalCode code; // code of the previous frame
+
+	/**
+	 * Initializes a decompressing stream and reads the stream header.
+	 *
+	 * @param in the input stream with the compressed bytes
+	 * @throws IOException if the stream is not a Huffman stream
+	 */
+	public HuffmanInputStream(InputStream in) throws IOException {
+		this.in = in;
+		byte[] header = in.readNBytes(5);
+		if(header.length < 5 || toInt(header, 0) != HuffmanOutputStream.MAGIC)
+			throw new IOException("Not a Huffman stream");
+		int version = header[4] & 0xff;
+		if(version != HuffmanOutputStream.VERSION)
+			throw new IOException("Unsupported stream version " + version);
+	}
+
+	@Override
+	public int read() throws IOException {
+		if(pos == n && !readFrame()) return -1;
+		return block[pos++] & 0xff;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		if(len == 0) return 0;
+		if(pos == n && !readFrame()) return -1;
+		int k = Math.min(len, n - pos);
+		System.arraycopy(block, pos, b, off, k);
+		pos += k;
+		return k;
+	}
+
+	@Override
+	public int available() throws IOException {
+		return n - pos;
+	}
+
+	@Override
+	public void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		in.close();
+	}
+
+	/**
+	 * Decodes the next frame into the block.
+	 *
+	 * @return true if a frame was read; false at the end of the stream
+	 * @throws IOException if the frame is malformed, truncated or corrupt
+	 */
+	private boolean readFrame() throws IOException {
+		if(closed) throw new IOException("Stream closed");
+		if(eof) return false;
+		int length = readInt();
+		if(length == 0) {
+			eof = true;
+			return false;
+		}
+		if(length < 0 || length > HuffmanOutputStream.MAX_BLOCK_SIZE)
+			throw new IOException("Illegal frame length " + length);
+
+		// read the code of the frame, or reuse the code of the previous one
+		int type = readByte();
+		if(type == HuffmanOutputStream.NEW_CODE) {
+			CanonicalCode next = readCode();
+			if(code == null || !Arrays.equals(code.length, next.length)) {
+				code = next;
+				decoder = new TableDecoder(code);
+			}
+		} else if(type != HuffmanOutputStream.REUSED_CODE || code == null) {
+			throw new IOException("Illegal code type " + type + " of a frame");
+		}
+		int payloadLength = readInt();
+		if(payloadLength < 0 || payloadLength > (long) code.maxLength * length / 8 + 1)
+			throw new IOException("Illegal payload length " + payloadLength);
+
+		// decode and verify the frame
+		if(payload.length < payloadLength) payload = new byte[payloadLength];
+		readFully(payload, payloadLength);
+		if(block.length < length) block = new byte[length];
+		try {
+			decoder.decode(new BitReader(payload, 0, payloadLength), block, 0, length);
+		} catch(NoSuchElementException | IllegalArgumentException e) {
+			throw new IOException("Malformed Huffman stream", e);
+		}
+		CRC32C crc = new CRC32C();
+		crc.update(block, 0, length);
+		if(readInt() != (int) crc.getValue())
+			throw new IOException("Checksum mismatch, the stream is corrupt");
+		pos = 0;
+		n = length;
+		return true;
+	}
+
+	/**
+	 * Reads a code length header written by CanonicalCode.writeHeader, taking
+	 * exactly its bytes from the stream.
+	 */
+	private CanonicalCode readCode() throws IOException {
+		int mode = readByte();
+		byte[] header;
+		if(mode == CanonicalCode.RUN_LENGTH) {
+			int runs = readByte() + 1;
+			header = new byte[2 + 2 * runs];
+			header[1] = (byte) (runs - 1);
+			readFully(header, 2, 2 * runs);
+		} else if(mode == CanonicalCode.RAW) {
+			header = new byte[1 + CanonicalCode.LIMIT];
+			readFully(header, 1, CanonicalCode.LIMIT);
+		} else {
+			throw new IOException("Unknown code length header mode " + mode);
+		}
+		header[0] = (byte) mode;
+		try {
+			return CanonicalCode.readHeader(new BinaryIn(new ByteArrayInputStream(header)));
+		} catch(IllegalArgumentException e) {
+			throw new IOException("Malformed Huffman stream", e);
+		}
+	}
+
+	private int readByte() throws IOException {
+		readFully(word, 1);
+		return word[0] & 0xff;
+	}
+
+	private int readInt() throws IOException {
+		readFully(word, 4);
+		return toInt(word, 0);
+	}
+
+	private void readFully(byte[] b, int len) throws IOException {
+		readFully(b, 0, len);
+	}
+
+	private void readFully(byte[] b, int off, int len) throws IOException {
+		if(in.readNBytes(b, off, len) < len) throw new IOException("Huffman stream ended early");
+	}
+
+	/**
+	 * Returns the big-endian int at position off of b, as BinaryOut writes it.
+	 */
+	private static int toInt(byte[] b, int off) {
+		return (b[off] & 0xff) << 24 | (b[off+1] & 0xff) << 16 | (b[off+2] & 0xff) << 8 | (b[off+3] & 0xff);
+	}
+}
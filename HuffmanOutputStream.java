@@ -0,0 +1,229 @@
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.util.zip.CRC32C;
+
+/**
+ * This class compresses the bytes written to it with Huffman coding and writes
+ * them to an underlying output stream, so data from sockets or memory can be
+ * compressed without a temporary file. Channels can be used through
+ * java.nio.channels.Channels.newOutputStream.
+ * <p>
+ * The bytes are collected in blocks of blockSize bytes, and every block is
+ * written as a frame once it is full, so memory use is bounded by the block
+ * size. A frame gets its own canonical code, or reuses the code of the frame
+ * before it when that is no larger than writing the new code, so a stream
+ * flushed often in small frames does not repeat the same code every time.
+ * The stream is read back with HuffmanInputStream. Every IOException of the
+ * underlying stream is passed on to the caller, so a broken connection is
+ * noticed by the writer instead of silently dropping frames.
+ * <p>
+ * Stream layout: magic number (4 bytes), format version (1 byte), frames.
+ * Frame layout: original length (4 bytes), code type (1 byte), code length
+ * header if the type is NEW_CODE, payload length (4 bytes), payload, CRC32C
+ * of the original bytes (4 bytes). A frame with an original length of 0 ends
+ * the stream.
+ */
+public class HuffmanOutputStream extends OutputStream {
+
+	// general final variables
+	static final int MAGIC = 0x48554653; // "HUFS"
+	static final int VERSION = 2; // current format version
+	static final int NEW_CODE = 0; // code type of a frame followed by its own code length header
+	static final int REUSED_CODE = 1; // code type of a frame with the code of the frame before it
+	static final int DEFAULT_BLOCK_SIZE = 1 << 20; // number of bytes per frame
+	static final int MAX_BLOCK_SIZE = 1 << 26; // largest number of bytes per frame
+
+	private final DataOutputStream out; // the compressed output
+	private final BitWriter bw; // writes the payloads to out, shared by all frames
+	private final ByteArrayOutputStream header = new ByteArrayOutputStream(); // code length header of the current frame
+	private final BinaryOut headerOut = new BinaryOut(header); // writes the code length header in memory
+	private final byte[] block; // bytes of the current frame
+	private final int maxLength; // longest code length of a frame
+	private int n; // number of bytes in block
+	private CanonicalCode previous; // code of the last frame, or null before the first frame
+	private int limitedFrames; // number of frames with a new code that was limited to maxLength
+	private long limitedBits; // payload bits those frames lost to the limit
+	private long limitedPayloadBits; // payload bits of those frames
+	private boolean closed;
+
+	/**
+	 * Initializes a compressing stream with the default block size.
+	 *
+	 * @param out the output stream for the compressed bytes
+	 * @throws IOException if the stream header cannot be written
+	 */
+	public HuffmanOutputStream(OutputStream out) throws IOException {
+		this(out, DEFAULT_BLOCK_SIZE);
+	}
+
+	/**
+	 * Initializes a compressing stream.
+	 *
+	 * @param out the output stream for the compressed bytes
+	 * @param blockSize number of bytes per frame, between 1 and MAX_BLOCK_SIZE
+	 * @throws IOException if the stream header cannot be written
+	 */
+	public HuffmanOutputStream(OutputStream out, int blockSize) throws IOException {
+		this(out, blockSize, CanonicalCode.DEFAULT_MAX_LENGTH);
+	}
+
+	/**
+	 * Initializes a compressing stream with a limit on the code length.
+	 *
+	 * @param out the output stream for the compressed bytes
+	 * @param blockSize number of bytes per frame, between 1 and MAX_BLOCK_SIZE
+	 * @param maxLength longest code length, between 8 and CanonicalCode.MAX_LENGTH
+	 * @throws IOException if the stream header cannot be written
+	 */
+	public HuffmanOutputStream(OutputStream out, int blockSize, int maxLength) throws IOException {
+		if(blockSize < 1 || blockSize > MAX_BLOCK_SIZE) throw new IllegalArgumentException("Illegal block size " + blockSize);
+		if(maxLength < 8 || maxLength > CanonicalCode.MAX_LENGTH) throw new IllegalArgumentException("Illegal maximum code length " + maxLength);
+		this.out = new DataOutputStream(new BufferedOutputStream(out));
+		this.bw = new BitWriter(Channels.newChannel(this.out));
+		this.block = new byte[blockSize];
+		this.maxLength = maxLength;
+		this.out.writeInt(MAGIC);
+		this.out.writeByte(VERSION);
+	}
+
+	@Override
+	public void write(int b) throws IOException {
+		ensureOpen();
+		block[n++] = (byte) b;
+		if(n == block.length) writeFrame();
+	}
+
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		ensureOpen();
+		while(len > 0) {
+			int k = Math.min(len, block.length - n);
+			System.arraycopy(b, off, block, n, k);
+			n += k;
+			off += k;
+			len -= k;
+			if(n == block.length) writeFrame();
+		}
+	}
+
+	/**
+	 * Writes the bytes collected so far as a frame, even if the block is not
+	 * full, and flushes the underlying stream. Calling flush often costs some
+	 * compression, because small frames are coded less tightly and may need
+	 * a code of their own.
+	 */
+	@Override
+	public void flush() throws IOException {
+		ensureOpen();
+		writeFrame();
+		out.flush();
+	}
+
+	/**
+	 * Writes the remaining bytes and the end of the stream, and closes the
+	 * underlying stream, even if the remaining bytes cannot be written.
+	 */
+	@Override
+	public void close() throws IOException {
+		if(closed) return;
+		closed = true;
+		try {
+			writeFrame();
+			out.writeInt(0);
+			out.flush();
+		} finally {
+			out.close();
+		}
+	}
+
+	/**
+	 * Encodes the collected bytes as one frame, with the code of the previous
+	 * frame if it covers every byte of the block and its payload grows by no
+	 * more than the size of a new code, or else with its own canonical code
+	 * limited to maxLength bits.
+	 */
+	private void writeFrame() throws IOException {
+		if(n == 0) return;
+
+		// count the block and build its code
+		long[] freq = new long[CanonicalCode.LIMIT];
+		CRC32C crc = new CRC32C();
+		Histogram.count(block, 0, n, freq);
+		crc.update(block, 0, n);
+		CanonicalCode huffman = CanonicalCode.build(freq);
+		CanonicalCode code = huffman.maxLength <= maxLength ? huffman : new CanonicalCode(CanonicalCode.limitedLengths(freq, maxLength));
+		boolean reuse = previous != null && previous.encodedBits(freq) <= code.encodedBits(freq) + 8L * code.headerSize();
+		for(int s = 0; s < CanonicalCode.LIMIT && reuse; s++)
+			if(freq[s] > 0 && previous.length[s] == 0) reuse = false;
+		if(reuse) {
+			code = previous;
+		} else if(code != huffman) {
+			limitedFrames++;
+			limitedBits += code.encodedBits(freq) - huffman.encodedBits(freq);
+			limitedPayloadBits += code.encodedBits(freq);
+		}
+		previous = code;
+
+		// write the frame
+		out.writeInt(n);
+		out.writeByte(reuse ? REUSED_CODE : NEW_CODE);
+		if(!reuse) {
+			header.reset();
+			code.writeHeader(headerOut);
+			headerOut.flush();
+			header.writeTo(out);
+		}
+		out.writeInt((int) ((code.encodedBits(freq) + 7) / 8));
+		try {
+			int c;
+			for(int i = 0; i < n; i++) {
+				c = block[i] & 0xff;
+				bw.write(code.code[c], code.length[c]);
+			}
+			bw.flush();
+		} catch(UncheckedIOException e) {
+			throw e.getCause();
+		}
+		out.writeInt((int) crc.getValue());
+		n = 0;
+	}
+
+	/**
+	 * Returns the number of frames written with a new code that had to be
+	 * limited to the longest code length.
+	 *
+	 * @return number of limited frames
+	 */
+	int limitedFrames() {
+		return limitedFrames;
+	}
+
+	/**
+	 * Returns the number of payload bits the limited frames lost to the limit
+	 * on the code length, against their Huffman codes.
+	 *
+	 * @return extra payload bits
+	 */
+	long limitedBits() {
+		return limitedBits;
+	}
+
+	/**
+	 * Returns the number of payload bits of the limited frames.
+	 *
+	 * @return payload bits of the limited frames
+	 */
+	long limitedPayloadBits() {
+		return limitedPayloadBits;
+	}
+
+	private void ensureOpen() throws IOException {
+		if(closed) throw new IOException("Stream closed");
+	}
+}
@@ -1,702 +1,1264 @@
 
-import java.awt.Color;
-import java.awt.Font;
-import java.awt.Graphics;
-import java.awt.Graphics2D;
-import java.awt.RenderingHints;
 import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileOutputStream;
 import java.io.FileReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
-
-import javax.swing.JCheckBox;
-import javax.swing.JFrame;
-import javax.swing.JLabel;
-import javax.swing.JPanel;
-import javax.swing.JSlider;
-
-
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
 
 /**
- * This class creates a window for displaying the Huffman tree.
- * Implements JFrame class.
+ * This class encodes/compresses and decodes/expands a give file with
+ * encode() and decode() methods.
+ * Implements Huffman class.
+ * <p>
+ * The settings are the only state of an instance, and calls keep nothing
+ * between them, so a configured instance can be used by several threads at
+ * once; only an attached observer sees their trees interleaved. Small
+ * records are better served by the Encoder and Decoder of a SharedTable,
+ * which are built once.
  * 
  * @author Kyounghan Min
- *
  */
-class Frame extends JFrame {
+public class HuffmanSubmit implements Huffman {
 	
-	private static final long serialVersionUID = 1L;
-	private Panel P = new Panel(null, "Tree is Empty");
+	// general final variables
+	private static final int LIMIT = 256; // largest code value in extended ASCII codes 
+	private static final int BLOCK_SIZE = 1 << 20; // number of bytes per block in parallel mode
+	private static final double REUSE_TOLERANCE = 0.01; // accepted growth of an adaptive block for keeping the previous code
+	private static final int STREAM_FLUSH_SIZE = 1 << 12; // bytes of an idle stream flushed without waiting
+	private static final long STREAM_FLUSH_NANOS = 50_000_000L; // longest time bytes of an idle stream are held back
+	
+	// miscellaneous variables
+	private TreeObserver observer; // watches the tree generation, or null to run headless
+	private long sampleSize; // number of bytes sampled for the model in single file mode, 0 to count everything
+	private int sampleStrides = 1; // number of evenly spaced chunks the sample is taken from
+	private int maxCodeLength = CanonicalCode.DEFAULT_MAX_LENGTH; // longest code in canonical, container and stream modes
 	
-	// class contructor
-	Frame() {
-		setSize(1300,900);
-		setVisible(true);
-		setLocationRelativeTo(null);
-		setResizable(false);
-		setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
-		setContentPane(P);
-		repaint();
-		revalidate();
+	/**
+	 * Sets the longest code length used by the canonical, container and stream
+	 * modes. Huffman codes deeper than this are rebuilt with length-limited
+	 * code lengths, trading a little compression for table-only decoding. The
+	 * legacy mode always uses the Huffman tree of its frequency file.
+	 * 
+	 * @param maxLength longest code length, between 8 and CanonicalCode.MAX_LENGTH
+	 */
+	public void setMaxCodeLength(int maxLength) {
+		if(maxLength < 8 || maxLength > CanonicalCode.MAX_LENGTH) throw new IllegalArgumentException("Illegal maximum code length " + maxLength);
+		maxCodeLength = maxLength;
 	}
 	
 	/**
-	 * Updates the Huffman trees and frame title to be displayed.
+	 * Makes the single file mode build its code from a sample of the input
+	 * instead of counting the whole file first, so the input is read about
+	 * once instead of twice. The sample is split into strides evenly spaced
+	 * chunks; a single stride samples the start of the file. Characters
+	 * missing from the sample still get a code. The extra compressed size
+	 * against the exact model is reported on standard error.
 	 * 
-	 * @param forest list of Huffman tree roots to display
-	 * @param title title for the display
+	 * @param size number of bytes to sample, or 0 to count the whole file
+	 * @param strides number of chunks the sample is split into, at least 1
 	 */
-	public void updateContent(List<Node> forest, String title) {
-		P.forest = forest;
-		P.title = title;
+	public void setSample(long size, int strides) {
+		if(size < 0 || strides < 1) throw new IllegalArgumentException("Illegal sample of " + size + " bytes in " + strides + " strides");
+		sampleSize = size;
+		sampleStrides = strides;
 	}
 	
 	/**
-	 * Updates the window but not the contents of the 
-	 * Huffman trees and frame title themselves.
+	 * Attaches an observer to the tree generation, such as a TreeDisplay. By
+	 * default there is none, and the codec runs headless without any delay.
+	 * 
+	 * @param observer observer of the tree generation, or null for none
 	 */
-	public void update() {
-		P.repaint();
-		P.revalidate();
-		repaint();
-		revalidate();
+	public void setObserver(TreeObserver observer) {
+		this.observer = observer;
 	}
 	
 	/**
-	 * Shows UI components.
+	 * Returns a Huffman data tree using the provided frequencies of characters.
+	 * 
+	 * @param freqArr array containing the frequences of each characters
+	 * @return the generated Huffman tree
 	 */
-	public void showComponents() {
-		P.showComponents();
+	HuffmanTree buildTree(long[] freqArr, String title) {
+		HuffmanTree tree = new HuffmanTree(freqArr);
+		
+		// creating an array containing all roots
+		int[] roots = new int[LIMIT];
+		int size = 0;
+		for(int i = 0; i < freqArr.length; i++)
+			if(freqArr[i] > 0) roots[size++] = i;
+		if(size == 0) throw new IllegalArgumentException("No characters to build a tree from");
+		
+		// special case: if there is only one type of data, simply return that data as the root
+		tree.root = roots[0];
+		if(size == 1) return tree;
+		if(observer != null) observer.start(title, freqArr);
+		
+		// build tree
+		int min1, min2;
+		long curr;
+		while(size > 1) {
+			min1 = 0;
+			min2 = 1;
+			
+			// find two roots with smallest frequencies
+			for(int i = 2; i < size; i++) {
+				curr = tree.freq[roots[i]];
+				if(curr < tree.freq[roots[min1]]) {
+					if(tree.freq[roots[min2]] > tree.freq[roots[min1]]) min2 = min1;
+					min1 = i;
+				} else if(curr < tree.freq[roots[min2]]) {
+					min2 = i;
+				}
+			}
+			
+			// merge the two roots, the smaller one on the left
+			long freq1 = tree.freq[roots[min1]], freq2 = tree.freq[roots[min2]];
+			int left = freq2 < freq1 ? roots[min2] : roots[min1], right = freq2 < freq1 ? roots[min1] : roots[min2];
+			int id = tree.merge(left, right);
+			if(observer != null) observer.merge(id, left, right, freq1+freq2);
+			roots[min1] = id;
+			System.arraycopy(roots, min2 + 1, roots, min2, size - min2 - 1);
+			size--;
+		}
+		
+		// finalize display and return
+		if(observer != null) observer.end();
+		tree.root = roots[0];
+		return tree;
 	}
 	
 	/**
-	 * Hides UI components.
+	 * Fills the given arrays with the Huffman encryption codes for all characters, 
+	 * which are generated using the provided Huffman tree. The indexes of the
+	 * arrays represent the extended ASCII decimal code, and the elements in that
+	 * index represent its encryption code and the number of bits in the code.
+	 * The codes are filled from the root down, since every parent has a larger
+	 * id than its children.
+	 * 
+	 * @param tree the Huffman tree
+	 * @param codes array of encryption codes, most significant bit first
+	 * @param lengths array of encryption code lengths
 	 */
-	public void hideComponents() {
-		P.hideComponents();
+	void getCode(HuffmanTree tree, long[] codes, byte[] lengths) {
+		if(HuffmanTree.isLeaf(tree.root)) {
+			lengths[tree.root] = 1;
+			return;
+		}
+		long[] code = new long[2*LIMIT - 1];
+		int[] depth = tree.depths();
+		for(int id = tree.root; id >= LIMIT; id--) {
+			code[tree.left[id]] = code[id] << 1;
+			code[tree.right[id]] = code[id] << 1 | 1;
+		}
+		for(int i = 0; i < LIMIT; i++) {
+			if(tree.freq[i] == 0) continue;
+			codes[i] = code[i];
+			lengths[i] = (byte) depth[i];
+		}
 	}
-}
-
-/**
- * This class initializes and assign functions regarding the UI 
- * components and Huffman tree display in the window. 
- * Implements JPanel class.
- * 
- * @author Kyounghan Min
- */
-class Panel extends JPanel {
+	
+	/**
+	 * Implements the Huffman algorithm to encrypt and potentially compress
+	 * the file.
+	 * 
+	 * @param inputFile name of the file to compress
+	 * @param outputFile name assignment for the compressed file
+	 * @param tree Huffman tree generated using the original frequency file
+	 */
+	private void compress(String inputFile, String outputFile, HuffmanTree tree) {
+		long[] codes = new long[LIMIT];
+		byte[] lengths = new byte[LIMIT];
+		getCode(tree, codes, lengths);
 
-	private static final long serialVersionUID = 1L;
+		BinaryOut bo = new BinaryOut(outputFile);
+		compress(inputFile, bo, codes, lengths);
+		bo.flush();
+	}
 	
-	// display options
-	private static int FONT_SIZE = 7; // data font size
-	private static boolean SHOW_LEAF_FREQ = false; // display data frequency in leaves
-	private static boolean HIDE_INTERNAL_NODES = false; // hide internal nodes
-	private static boolean TRANSLUCENT_BRANCHES = false; // translucent branches
-	private static boolean BINARY_DISPLAY = false; // data display in binary
+	/**
+	 * Writes the file encoded with the given codes through a word-at-a-time
+	 * bit writer. The file is memory-mapped, so files larger than 2 GB are
+	 * read in windows without copying them into the heap.
+	 * 
+	 * @param inputFile name of the file to compress
+	 * @param bo binary output for the compressed bits
+	 * @param codes encryption code of each character
+	 * @param lengths number of bits in the encryption code of each character
+	 */
+	private void compress(String inputFile, BinaryOut bo, long[] codes, byte[] lengths) {
+		try(FileChannel in = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+			BitWriter bw = new BitWriter(bo);
+			for(MappedByteBuffer w : MappedFile.map(in, FileChannel.MapMode.READ_ONLY, 0, in.size(), 1))
+				compressBlock(w, bw, codes, lengths);
+			bw.flush();
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
 	
-	// panel dimensions
-	private static final int DEFAULT_WIDTH = 1300, DEFAULT_HEIGHT = 900;
+	/**
+	 * Implements the Huffman algorithm to decrypt and potentially expand
+	 * the file. Decoding stops after exactly count symbols so that the
+	 * padding bits at the end of the file are never decoded.
+	 * 
+	 * @param inputFile name of the file to expand
+	 * @param outputFile name assignment for the expanded file
+	 * @param tree Huffman tree generated using the original frequency file
+	 * @param count number of symbols in the original file
+	 */
+	private void expand(String inputFile, String outputFile, HuffmanTree tree, long count) {
+		BinaryIn bi = new BinaryIn(inputFile);
+		BinaryOut bo = new BinaryOut(outputFile);
+		
+		// decoding the entire encrypted data with a lookup table built from its Huffman tree
+		if(count > 0) new TableDecoder(tree).decode(new BitReader(bi), bo, count, null);
+		bo.flush();
+	}
 	
-	// font presets
-	private final Font bigFont = new Font("Monospace", Font.BOLD, 18); // font for title
-	private Font smallFont = new Font("Monospace", Font.BOLD, FONT_SIZE); // font for data display
+	/**
+	 * Writes the file encoded with the given canonical code.
+	 * 
+	 * @param inputFile name of the file to compress
+	 * @param bo binary output for the compressed bits
+	 * @param code canonical code generated using the original frequencies
+	 */
+	private void compress(String inputFile, BinaryOut bo, CanonicalCode code) {
+		byte[] lengths = new byte[LIMIT];
+		for(int i = 0; i < LIMIT; i++) lengths[i] = (byte) code.length[i];
+		compress(inputFile, bo, code.code, lengths);
+	}
 	
-	// UI components
-	private static JCheckBox showLeafFreq, hideInternalNodes, translucentBranches, binaryDisplay;
-	private static JSlider fontSize, fps;
-	private static JLabel fsLabel, fpsLabel;
+	/**
+	 * Implements the Huffman encoding algorithm.
+	 * 
+	 * @param inputFile name of the file to encode
+	 * @param outputFile name assignment for the encoded file
+	 * @param freqFile name assignment for the frequency file
+	 */
+	public void encode(String inputFile, String outputFile, String freqFile) {
+		
+		// get data from file
+		long[] rawFreq = countFile(inputFile);
+		if(rawFreq == null) return;
+
+		// write frequency file
+		BinaryOut bo = new BinaryOut(freqFile);
+		for(int i = 0; i < rawFreq.length; i++)
+			bo.write(Integer.toBinaryString(i) + ":" + rawFreq[i] + "\n");
+		bo.flush();
+		
+		// build huffman tree
+		HuffmanTree tree = buildTree(rawFreq, "Encode");
+		
+		// write compressed file
+		compress(inputFile, outputFile, tree);
+	}
 	
-	// miscellaneous variables
-	protected List<Node> forest;
-	protected String title;
-	
-	// class constructor
-	Panel(Node[] forest, String title) {
-		setSize(DEFAULT_WIDTH,DEFAULT_HEIGHT);
-		this.forest = new ArrayList<Node>();
-		this.title = title;
-		setLayout(null);
+	/**
+	 * Implements the Huffman decoding algorithm.
+	 * 
+	 * @param inputFile name of the file to decode
+	 * @param outputFile name assignment for the decoded file
+	 * @param freqFile name of the frequency file
+	 */
+	public void decode(String inputFile, String outputFile, String freqFile) {
 		
-		// initialize all UI components
-		// checkbox: show data frequencies in leaves - on/off
-		showLeafFreq = new JCheckBox("Show frequencies of leaves");
-		showLeafFreq.setBounds(750,20,260,20);
-		add(showLeafFreq);
+		// get frequency file
+		long[] rawFreq = new long[LIMIT];
+		try {
+			BufferedReader br = new BufferedReader(new FileReader(freqFile));
+			int n = 0;
+			String line;
+			
+			while(true) {
+				line = br.readLine();
+				if(line == null) break;
+				rawFreq[n] = Long.parseLong(line.substring(line.indexOf(":")+1));
+				n++;
+			}
+			br.close();
+			
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
 		
-		// checkbox: hide internal nodes - on/off
-		hideInternalNodes = new JCheckBox("Hide internal nodes");
-		hideInternalNodes.setBounds(750,40,260,20);
-		add(hideInternalNodes);
+		// count the symbols of the original file
+		long count = 0;
+		for(int i = 0; i < rawFreq.length; i++) count += rawFreq[i];
 		
-		// checkbox: set branches and leaf borders as translucent - on/off
-		translucentBranches = new JCheckBox("Translucent branches");
-		translucentBranches.setBounds(750,60,260,20);
-		add(translucentBranches);
+		// build huffman tree
+		HuffmanTree tree = buildTree(rawFreq, "Decode");
 		
-		// checkbox: display data as binary - on/off
-		binaryDisplay = new JCheckBox("Display data in binary");
-		binaryDisplay.setBounds(750,80,260,20);
-		add(binaryDisplay);
+		// write expanded file
+		expand(inputFile, outputFile, tree, count);
+	}
+	
+	/**
+	 * Implements the Huffman encoding algorithm with a canonical Huffman code.
+	 * Instead of a text frequency file, only the symbol count and the code
+	 * lengths are stored in a small binary header file.
+	 * 
+	 * @param inputFile name of the file to encode
+	 * @param outputFile name assignment for the encoded file
+	 * @param headerFile name assignment for the code length header file
+	 */
+	public void encodeCanonical(String inputFile, String outputFile, String headerFile) {
 		
-		// slider: font size
-		fontSize = new JSlider();
-		fontSize.setBounds(1040,20,240,40);
-		fontSize.setValue(FONT_SIZE);
-		fontSize.setMaximum(20);
-		fontSize.setPaintTicks(true);
-		fontSize.setPaintLabels(true);
-		fontSize.setMajorTickSpacing(5);
-		fontSize.setMinorTickSpacing(1);
-		fontSize.setPaintTrack(false);
-		add(fontSize);
+		// get data from file
+		long[] rawFreq = countFile(inputFile);
+		if(rawFreq == null) return;
+		long count = 0;
+		for(int i = 0; i < LIMIT; i++) count += rawFreq[i];
 		
-		// slider: FPS
-		fps = new JSlider();
-		fps.setBounds(1040,60,240,40);
-		fps.setValue(1000/HuffmanSubmit.DELAY);
-		fps.setMinimum(1);
-		fps.setPaintTicks(true);
-		fps.setPaintLabels(true);
-		fps.setMajorTickSpacing(20);
-		fps.setMinorTickSpacing(5);
-		fps.setPaintTrack(false);
-		fps.setMaximum(101);
-		add(fps);
+		// build the code lengths, limited to maxCodeLength
+		CanonicalCode code = code(rawFreq, count, "Encode");
 		
-		// label: font size slider
-		fsLabel = new JLabel("Font:");
-		fsLabel.setBounds(1000,20,40,40);
-		add(fsLabel);
+		// write header file
+		BinaryOut bo = new BinaryOut(headerFile);
+		bo.write(count);
+		code.writeHeader(bo);
+		bo.flush();
 		
-		// label: FPS slider
-		fpsLabel = new JLabel("FPS:");
-		fpsLabel.setBounds(1000,60,40,40);
-		add(fpsLabel);
+		// write compressed file
+		bo = new BinaryOut(outputFile);
+		compress(inputFile, bo, code);
+		bo.flush();
 	}
 	
 	/**
-	 * Sets the visibility of all UI components as true.
+	 * Implements the Huffman decoding algorithm with a canonical Huffman code.
+	 * The decoding table is built straight from the code lengths in the header
+	 * file, without building the Huffman tree.
+	 * 
+	 * @param inputFile name of the file to decode
+	 * @param outputFile name assignment for the decoded file
+	 * @param headerFile name of the code length header file
 	 */
-	public void showComponents() {
-		showLeafFreq.setVisible(true);
-		hideInternalNodes.setVisible(true);
-		translucentBranches.setVisible(true);
-		binaryDisplay.setVisible(true);
-		fontSize.setVisible(true);
-		fps.setVisible(true);
-		fsLabel.setVisible(true);
-		fpsLabel.setVisible(true);
+	public void decodeCanonical(String inputFile, String outputFile, String headerFile) {
+		
+		// get header file
+		BinaryIn bi = new BinaryIn(headerFile);
+		long count = bi.readLong();
+		CanonicalCode code = CanonicalCode.readHeader(bi);
+		
+		// write expanded file
+		bi = new BinaryIn(inputFile);
+		BinaryOut bo = new BinaryOut(outputFile);
+		if(count > 0) new TableDecoder(code).decode(new BitReader(bi), bo, count, null);
+		bo.flush();
 	}
 	
 	/**
-	 * Sets the visibility of all UI components as false.
+	 * Implements the Huffman encoding algorithm with a single self-contained
+	 * output file. See Container for the layout of the file. The input file is
+	 * memory-mapped once, and both the frequency count and the compression read
+	 * from that mapping. The compressed bits go to the output file through a
+	 * direct buffer.
+	 * 
+	 * @param inputFile name of the file to encode
+	 * @param outputFile name assignment for the encoded file
 	 */
-	public void hideComponents() {
-		showLeafFreq.setVisible(false);
-		hideInternalNodes.setVisible(false);
-		translucentBranches.setVisible(false);
-		binaryDisplay.setVisible(false);
-		fontSize.setVisible(false);
-		fps.setVisible(false);
-		fsLabel.setVisible(false);
-		fpsLabel.setVisible(false);
+	public void encode(String inputFile, String outputFile) {
+		try {
+			encodeContainer(inputFile, outputFile);
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
 	}
 	
 	/**
-	 * Basic overriding paint method.
-	 * Called automatically when panel is updated.
-	 * Creates graphic images.
+	 * Same as encode(inputFile, outputFile), but reports I/O errors to the
+	 * caller instead of printing them, so batch runs can count the failures.
+	 * 
+	 * @param inputFile name of the file to encode
+	 * @param outputFile name assignment for the encoded file
+	 * @throws IOException if a file cannot be read or written
 	 */
-	@Override
-	public void paintComponent(Graphics g) {
-		
-		g.setColor(Color.lightGray);
-		g.fillRect(0,0,DEFAULT_WIDTH,DEFAULT_HEIGHT);
-		g.setColor(Color.white);
-		g.fillRect(20,120,1260,660);
-		g.setColor(Color.black);
-		g.drawRect(20,120,1260,660);
-		
-		// Draw trie
-		drawForest(forest,DEFAULT_WIDTH/2,150,g);
-		
-		// Create label indicating which command is being run
-		String caption = title;
-		g.setFont(bigFont);
-		g.drawString(caption, 50, 50);
+	void encodeContainer(String inputFile, String outputFile) throws IOException {
+		try(FileChannel in = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ);
+			FileChannel out = FileChannel.open(Paths.get(outputFile), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			
+			// get data and checksum from the mapped file, or only a sample of the data
+			long count = in.size();
+			MappedByteBuffer[] windows = MappedFile.map(in, FileChannel.MapMode.READ_ONLY, 0, count, 1);
+			boolean sampled = sampleSize > 0 && sampleSize < count;
+			long[] rawFreq = sampled ? sample(windows, count) : new long[LIMIT];
+			CRC32C crc = new CRC32C();
+			for(int w = 0; w < windows.length && !sampled; w++) {
+				Histogram.count(windows[w], rawFreq);
+				crc.update(windows[w].duplicate());
+			}
+			
+			// build the code lengths, limited to maxCodeLength
+			CanonicalCode code = code(rawFreq, count, "Encode");
+			byte[] lengths = new byte[LIMIT];
+			for(int i = 0; i < LIMIT; i++) lengths[i] = (byte) code.length[i];
+			
+			// write header, compressed data and checksum; a sampled model only
+			// learns the payload length and the exact counts while compressing
+			Container header = new Container(count, code, sampled ? 0 : (code.encodedBits(rawFreq) + 7) / 8);
+			writeFully(out, ByteBuffer.wrap(headerBytes(header)), 0);
+			out.position(header.headerSize());
+			BitWriter bw = new BitWriter(out);
+			long[] exactFreq = new long[LIMIT];
+			for(MappedByteBuffer w : windows) {
+				compressBlock(w, bw, code.code, lengths);
+				if(!sampled) continue;
+				Histogram.count(w, exactFreq);
+				crc.update(w.duplicate());
+			}
+			bw.flush();
+			writeFully(out, ByteBuffer.allocate(Container.TRAILER_SIZE).putInt(0, (int) crc.getValue()), out.position());
+			if(sampled) {
+				header = new Container(count, code, bw.written() / 8);
+				writeFully(out, ByteBuffer.wrap(headerBytes(header)), 0);
+				long exact = (CanonicalCode.build(exactFreq, maxCodeLength).encodedBits(exactFreq) + 7) / 8;
+				System.err.printf("Model sampled from %d of %d bytes: %d payload bytes, %d more than the exact model (+%.4f%%)%n",
+					Math.min(sampleSize, count), count, header.payloadLength, header.payloadLength - exact, 100.0 * (header.payloadLength - exact) / exact);
+			}
+		}
 	}
 	
 	/**
-	 * Draws multiple Huffman trees next to one another.
+	 * Implements the Huffman decoding algorithm for a file written by
+	 * encode(inputFile, outputFile), encodeParallel or encodeAdaptive.
+	 * Decoding stops at exactly the original length, and the decoded data is
+	 * verified against the stored checksums. The payload is read from a
+	 * memory-mapped input file and decoded straight into the memory-mapped
+	 * output file, which is sized to the original length up front. Adaptive
+	 * files are decoded block by block on a single thread.
 	 * 
-	 * @param forest list of Huffman tree roots
-	 * @param x x-coordinate of the center tree root
-	 * @param y y-coordinate of the center tree root
-	 * @param g Graphics
+	 * @param inputFile name of the file to decode
+	 * @param outputFile name assignment for the decoded file
+	 * @throws IllegalArgumentException if the file is not a valid container or is corrupt
 	 */
-	private void drawForest(List<Node> forest, int x, int y, Graphics g) {
-		if(forest == null) return;
+	public void decode(String inputFile, String outputFile) {
+		try {
+			decodeContainer(inputFile, outputFile);
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Same as decode(inputFile, outputFile), but reports I/O errors to the
+	 * caller instead of printing them, so batch runs can count the failures.
+	 * 
+	 * @param inputFile name of the file to decode
+	 * @param outputFile name assignment for the decoded file
+	 * @throws IOException if a file cannot be read or written
+	 * @throws IllegalArgumentException if the file is not a valid container or is corrupt
+	 */
+	void decodeContainer(String inputFile, String outputFile) throws IOException {
 		
-		// antialiasing for smooth graphics
-		Graphics2D g2 = (Graphics2D)g;
-		g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
+		// get and validate header
+		Container header = readHeader(inputFile);
+		if(header.version == Container.ADAPTIVE) {
+			decodeBlocks(inputFile, outputFile, header, 1);
+			return;
+		}
+		TableDecoder decoder = new TableDecoder(header.code);
 		
-		// drawing all trees in the forest
-		Node current;
-		int newX;
-		for(int i = 0; i < forest.size(); i++) {
+		try(FileChannel in = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ);
+			FileChannel out = FileChannel.open(Paths.get(outputFile), StandardOpenOption.READ,
+				StandardOpenOption.WRITE, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
 			
-			// updating and receiving new display options
-			SHOW_LEAF_FREQ = showLeafFreq.isSelected();
-			HIDE_INTERNAL_NODES = hideInternalNodes.isSelected();
-			TRANSLUCENT_BRANCHES = translucentBranches.isSelected();
-			BINARY_DISPLAY = binaryDisplay.isSelected();
-			FONT_SIZE = fontSize.getValue();
-			HuffmanSubmit.DELAY = 1000/fps.getValue();
-			smallFont = new Font("Monospace", Font.BOLD, FONT_SIZE);
+			// write expanded file block by block
+			if(header.version == Container.BLOCKS) {
+				MappedByteBuffer[] windows = MappedFile.map(out, FileChannel.MapMode.READ_WRITE, 0, header.length, header.blockSize);
+				BitReader br = new BitReader(in, header.headerSize(), header.payloadLength);
+				long end = 0;
+				for(int b = 0; b < header.blockLength.length; b++) {
+					ByteBuffer block = slice(windows, (long) b * header.blockSize, header.blockBytes(b));
+					try {
+						decoder.decode(br, block.duplicate(), block.remaining());
+						br.align();
+					} catch(NoSuchElementException e) {
+						throw new IllegalArgumentException("Block " + b + " of " + inputFile + " is truncated", e);
+					}
+					end += 8L * header.blockLength[b];
+					
+					CRC32C crc = new CRC32C();
+					crc.update(block);
+					if(br.position() != end || header.blockCrc[b] != (int) crc.getValue())
+						throw new IllegalArgumentException("Checksum mismatch in block " + b + ", " + inputFile + " is corrupt");
+				}
+				return;
+			}
 			
-			// drawing individual tree
-			current = forest.get(i);
-			newX = x + (int) (x * (-forest.size()/2+i)/(double)forest.size());
-			drawTree(current, newX, y, g);
+			// write expanded file
+			MappedByteBuffer[] windows = MappedFile.map(out, FileChannel.MapMode.READ_WRITE, 0, header.length, 1);
+			BitReader br = new BitReader(in, header.headerSize(), header.payloadLength);
+			CRC32C crc = new CRC32C();
+			for(MappedByteBuffer w : windows) {
+				try {
+					decoder.decode(br, w.duplicate(), w.capacity());
+				} catch(NoSuchElementException e) {
+					throw new IllegalArgumentException("Payload of " + inputFile + " is truncated", e);
+				}
+				crc.update(w.duplicate());
+			}
+			
+			// verify checksum
+			ByteBuffer trailer = ByteBuffer.allocate(Container.TRAILER_SIZE);
+			while(trailer.hasRemaining() && in.read(trailer, header.headerSize() + header.payloadLength + trailer.position()) > 0);
+			if(trailer.getInt(0) != (int) crc.getValue())
+				throw new IllegalArgumentException("Checksum mismatch, " + inputFile + " is corrupt");
 		}
 	}
 	
 	/**
-	 * Draws a single Huffman tree.
+	 * Implements one-pass Huffman encoding for inputs that can only be read
+	 * once, such as pipes, sockets or standard input. The input is never
+	 * stored: every block of up to blockSize bytes is counted and encoded on
+	 * its own by a HuffmanOutputStream. Whenever the input has no more bytes
+	 * ready, the bytes received so far are encoded and flushed once there are
+	 * STREAM_FLUSH_SIZE of them or the oldest has waited STREAM_FLUSH_NANOS,
+	 * so the latency of a live stream is bounded by that window, not by the
+	 * block size, while a stream arriving line by line is not written as one
+	 * tiny frame per line. The compression lost to limiting the codes of the
+	 * frames to maxCodeLength is reported on standard error at the end. The
+	 * output is decoded by decodeStream.
 	 * 
-	 * @param current root of the Huffman tree
-	 * @param x x-coordinate of the root
-	 * @param y y-coordinate of the root
-	 * @param g Graphics
+	 * @param in input with the bytes to encode
+	 * @param out output for the encoded stream
+	 * @param blockSize largest number of bytes per block
 	 */
-	private void drawTree(Node current, int x, int y, Graphics g) {
-		
-		// if current node is a leaf
-		// draw leaf
-		if(current.isLeaf()) {
-			drawLeaf((char) Integer.parseInt(current.data,2) + "", current.freq + "", x, y, g);
-			
-		// if current node is not a leaf (is an internal node)
-		} else {
-			
-			// draw left branch if exists
-			if(current.left != null) {
-				if(TRANSLUCENT_BRANCHES) g.setColor(new Color(0,0,0,63));
-				if(y > 270) {
-					g.drawLine(x, y, x-7, y+25);
-					drawTree(current.left, x-7, y+25, g);
-				} else {
-					g.drawLine(x, y, (int) (x-225*Math.pow(1.75, -Math.abs(120-y)/20)), y+25);
-					drawTree(current.left, (int) (x-225*Math.pow(1.75, -Math.abs(120-y)/20)), y+25, g);
+	public void encodeStream(InputStream in, OutputStream out, int blockSize) {
+		try(HuffmanOutputStream hos = new HuffmanOutputStream(out, blockSize, maxCodeLength)) {
+			byte[] buf = new byte[Math.min(blockSize, 1 << 16)];
+			int n, pending = 0;
+			long first = 0; // arrival time of the oldest pending byte
+			while((n = in.read(buf)) >= 0) {
+				if(pending == 0) first = System.nanoTime();
+				hos.write(buf, 0, n);
+				pending = (pending + n) % blockSize;
+				
+				// input is idle: do not hold back what was received for longer than the window
+				if(pending > 0 && idle(in, pending, first)) {
+					hos.flush();
+					pending = 0;
 				}
 			}
 			
-			// draw right branch if exists
-			if(current.right != null) {
-				if(TRANSLUCENT_BRANCHES) g.setColor(new Color(0,0,0,63));
-				if(y > 270) {
-					g.drawLine(x, y, x+7, y+25);
-					drawTree(current.right, x+7, y+25, g);
-				} else {
-					g.drawLine(x, y, (int) (x+225*Math.pow(1.75, -Math.abs(120-y)/20)), y+25);
-					drawTree(current.right, (int) (x+225*Math.pow(1.75, -Math.abs(120-y)/20)), y+25, g);
-				}
+			// write the last frame, so the report covers every frame
+			hos.flush();
+			if(hos.limitedFrames() > 0)
+				System.err.printf("Code lengths of %d frames limited to %d bits: %d more payload bits (+%.4f%%)%n", hos.limitedFrames(),
+					maxCodeLength, hos.limitedBits(), 100.0 * hos.limitedBits() / (hos.limitedPayloadBits() - hos.limitedBits()));
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
+	
+	/**
+	 * Waits until the input has more bytes ready or the pending bytes are due
+	 * to be flushed.
+	 * 
+	 * @param in input of the stream
+	 * @param pending number of bytes received but not flushed
+	 * @param first arrival time of the oldest pending byte, from System.nanoTime
+	 * @return true if the pending bytes should be flushed now
+	 */
+	private static boolean idle(InputStream in, int pending, long first) throws IOException {
+		while(in.available() == 0) {
+			if(pending >= STREAM_FLUSH_SIZE || System.nanoTime() - first >= STREAM_FLUSH_NANOS) return true;
+			try {
+				Thread.sleep(1);
+			} catch(InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return true;
 			}
-			
-			// draw internal node
-			if(!HIDE_INTERNAL_NODES) drawInternalNode(current.freq + "", x, y, g);
 		}
+		return false;
 	}
 	
 	/**
-	 * Draws a single leaf of a Huffman tree.
+	 * Implements the Huffman decoding algorithm for a stream written by
+	 * encodeStream. Every block is written out as soon as it is decoded.
 	 * 
-	 * @param data leaf data
-	 * @param freq data frequency
-	 * @param x x-coordinate of the leaf
-	 * @param y y-coordinate of the leaf
-	 * @param g Graphics
+	 * @param in input with the encoded stream
+	 * @param out output for the decoded bytes
 	 */
-	private void drawLeaf(String data, String freq, int x, int y, Graphics g) {
-		
-		// setting font and getting string dimensions of the current data
-		g.setFont(smallFont);
-		if(BINARY_DISPLAY) data = Integer.toBinaryString(data.charAt(0));
-		String text = data;
-		if(SHOW_LEAF_FREQ) text += ":" + freq;
-		int width = g.getFontMetrics().stringWidth(text);
-		int height = g.getFontMetrics().getHeight();
-					
-		// draw node
-		g.setColor(Color.green);
-		if(TRANSLUCENT_BRANCHES) g.setColor(new Color(0,255,0,63));
-		g.fillRect(x-width/2-1, y-height/2-1, width+2, height+2);
-		g.setColor(Color.black);
-		if(TRANSLUCENT_BRANCHES) g.setColor(new Color(0,0,0,63));
-		g.drawRect(x-width/2-1, y-height/2-1, width+2, height+2);
-		g.setColor(Color.black);
-		g.drawString(text, x-width/2, y+height/2);
+	public void decodeStream(InputStream in, OutputStream out) {
+		try(HuffmanInputStream his = new HuffmanInputStream(in)) {
+			byte[] buf = new byte[1 << 16];
+			int n;
+			while((n = his.read(buf)) >= 0) {
+				out.write(buf, 0, n);
+				if(his.available() == 0) out.flush();
+			}
+			out.flush();
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
 	}
 	
 	/**
-	 * Draws a single internal node of a Huffman tree.
+	 * Builds the checkpoint index of a container file for range reads and
+	 * saves it next to the file. See SeekableReader.
 	 * 
-	 * @param freq data frequency
-	 * @param x x-coordinate of the internal node
-	 * @param y y-coordinate of the internal node
-	 * @param g Graphics
+	 * @param inputFile name of the container file
+	 * @param interval original bytes between checkpoints
 	 */
-	private void drawInternalNode(String freq, int x, int y, Graphics g) {
-		
-		// setting font and getting string dimensions of the current data
-		g.setFont(smallFont);
-		int width = g.getFontMetrics().stringWidth(freq);
-		int height = g.getFontMetrics().getHeight();
-		
-		// draw node
-		g.setColor(Color.yellow);
-		if(TRANSLUCENT_BRANCHES) g.setColor(new Color(255,255,0,63));
-		g.fillRect(x-width/2-1, y-height/2-1, width+2, height+2);
-		g.setColor(Color.black);
-		if(TRANSLUCENT_BRANCHES) g.setColor(new Color(0,0,0,63));
-		g.drawRect(x-width/2-1, y-height/2-1, width+2, height+2);
-		g.setColor(Color.black);
-		g.drawString(freq, x-width/2, y+height/2);
+	public void index(String inputFile, int interval) {
+		new File(inputFile + SeekableReader.SUFFIX).delete();
+		try(SeekableReader reader = new SeekableReader(inputFile, interval)) {
+			reader.saveIndex();
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
 	}
-}
-
-
-
-/**
- * This class deals with the node for Huffman tree, along with some
- * basic functions.
- * 
- * @author Kyounghan Min
- */
-class Node {
-	String data;
-	int freq;
-	Node left, right;
 	
-	// class constructor for generating a leaf
-	Node(String data, int freq) {
-		this.data = data;
-		this.freq = freq;
+	/**
+	 * Decodes a range of the original data of a container file written by
+	 * encode(inputFile, outputFile), encodeParallel or encodeAdaptive, without
+	 * decoding the file from the beginning. The checkpoint index is loaded
+	 * from next to the file, or built and saved if it is missing or stale.
+	 * 
+	 * @param inputFile name of the container file
+	 * @param offset position of the first byte in the original data
+	 * @param length number of bytes
+	 * @param outputFile name assignment for the decoded range
+	 * @throws IllegalArgumentException if the range is outside the original data or the file is corrupt
+	 */
+	public void readRange(String inputFile, long offset, int length, String outputFile) {
+		try(SeekableReader reader = new SeekableReader(inputFile)) {
+			if(reader.indexBuilt()) reader.saveIndex();
+			Files.write(Paths.get(outputFile), reader.read(offset, length));
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
 	}
 	
-	// class constructor for generating an internal node
-	Node(int freq, Node left, Node right) {
-		this.freq = freq;
-		this.left = left;
-		this.right = right;
+	/**
+	 * Trains a shared table on a sample corpus and saves it in tableDir under
+	 * its id. Small inputs encoded with encodeShared against the table carry
+	 * only its id instead of a code of their own.
+	 * 
+	 * @param corpus sample file, or directory whose files are all sampled
+	 * @param tableDir directory of the shared tables, created if missing
+	 * @return id of the saved table
+	 * @throws UncheckedIOException if the corpus cannot be read or the table cannot be saved
+	 */
+	public int train(String corpus, String tableDir) {
+		long[] freq = new long[LIMIT];
+		try(Stream<Path> files = Files.walk(Paths.get(corpus))) {
+			files.filter(Files::isRegularFile).forEach(f -> {
+				long[] fileFreq = countFile(f.toString());
+				if(fileFreq == null) throw new UncheckedIOException(new IOException("Cannot read " + f));
+				for(int i = 0; i < LIMIT; i++) freq[i] += fileFreq[i];
+			});
+			SharedTable table = SharedTable.train(freq, maxCodeLength);
+			table.save(Paths.get(tableDir));
+			return table.id();
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
+		}
 	}
 	
 	/**
-	 * Checks and returns whether the node is a leaf or not.
+	 * Encodes a small file with a shared table trained by train. The encoded
+	 * file holds the table id, the original length and the payload, and is
+	 * decoded by decodeShared with the same table directory.
 	 * 
-	 * @return true if the node is a leaf; otherwise false
+	 * @param inputFile name of the file to encode
+	 * @param outputFile name assignment for the encoded file
+	 * @param tableDir directory of the shared tables
+	 * @param tableId id of the table to encode with
 	 */
-	boolean isLeaf() {
-		if(left == null && right == null) return true;
-		return false;
+	public void encodeShared(String inputFile, String outputFile, String tableDir, int tableId) {
+		try {
+			SharedTable table = SharedTable.load(Paths.get(tableDir), tableId);
+			byte[] data = Files.readAllBytes(Paths.get(inputFile));
+			Files.write(Paths.get(outputFile), table.encoder().encode(data, 0, data.length));
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
 	}
-}
-
-
-
-/**
- * This class encodes/compresses and decodes/expands a give file with
- * encode() and decode() methods.
- * Implements Huffman class.
- * 
- * @author Kyounghan Min
- */
-public class HuffmanSubmit implements Huffman {
 	
-	// general final variables
-	private static final int BIT = 8; // number of bits in one byte
-	private static final int LIMIT = 256; // largest code value in extended ASCII codes 
-	private static final boolean DISPLAY = true; // on/off tree display
+	/**
+	 * Decodes a file written by encodeShared with the table whose id it holds.
+	 * 
+	 * @param inputFile name of the file to decode
+	 * @param outputFile name assignment for the decoded file
+	 * @param tableDir directory of the shared tables
+	 * @throws IllegalArgumentException if the file is malformed
+	 */
+	public void decodeShared(String inputFile, String outputFile, String tableDir) {
+		try {
+			byte[] record = Files.readAllBytes(Paths.get(inputFile));
+			SharedTable table = SharedTable.load(Paths.get(tableDir), Decoder.tableId(record));
+			Files.write(Paths.get(outputFile), table.decoder().decode(record));
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
+	}
 	
-	// miscellaneous variables
-	protected static int DELAY = 100; // ms delay between each frame of animated tree generation display
-	private static Frame F; // JFrame for tree display
+	/**
+	 * Encodes many files in single file mode in one run, on a pool of worker
+	 * threads, so each file costs only its own encoding. The outputs mirror
+	 * the relative paths of the inputs under targetDir, with the suffix
+	 * ".huf", and every file and the totals are reported on standard error.
+	 * With an observer attached, the files are encoded one at a time, so the
+	 * generations of their trees do not interleave.
+	 * 
+	 * @param source directory whose files are encoded, or a text file listing one file per line
+	 * @param targetDir directory for the encoded files, created if missing
+	 * @param threads number of worker threads
+	 * @return number of files that failed
+	 */
+	public int encodeBatch(String source, String targetDir, int threads) {
+		return batch(true, source, targetDir, threads);
+	}
 	
 	/**
-	 * Returns a Huffman data tree using the provided frequencies of characters.
+	 * Decodes many files written by encodeBatch, or by any of the container
+	 * modes, in one run. The outputs mirror the relative paths of the inputs
+	 * under targetDir, without the suffix ".huf".
 	 * 
-	 * @param freqArr array containing the frequences of each characters
-	 * @return root node of the generated Huffman tree
+	 * @param source directory whose files are decoded, or a text file listing one file per line
+	 * @param targetDir directory for the decoded files, created if missing
+	 * @param threads number of worker threads
+	 * @return number of files that failed
 	 */
-	private Node buildTree(int[] freqArr, String title) {
-		
-		// creating a list containing all roots
-		List<Node> rootList = new ArrayList<Node>();
-		for(int i = 0; i < freqArr.length; i++)
-			if(freqArr[i] > 0) rootList.add(new Node(Integer.toBinaryString(i),freqArr[i]));
-		
-		// special case: if there is only one type of data, simply return that data as a node
-		if(rootList.size() <= 1) return rootList.get(0);
-		
-		// build tree
-		int min1, min2, curr, iter = 0;
-		while(rootList.size() > 1) {
-			min1 = 0;
-			min2 = 1;
-			iter += 1;
-			
-			// find two roots with smallest frequencies
-			for(int i = 2; i < rootList.size(); i++) {
-				curr = rootList.get(i).freq;
-				if(curr < rootList.get(min1).freq) {
-					if(rootList.get(min2).freq > rootList.get(min1).freq) min2 = min1;
-					min1 = i;
-				} else if(curr < rootList.get(min2).freq) {
-					min2 = i;
-				}
-			}
-									
-			// merge the two roots
-			int freq1 = rootList.get(min1).freq, freq2 = rootList.get(min2).freq;
-			if(freq2 < freq1)
-				rootList.set(min1, new Node(freq1+freq2, rootList.get(min2), rootList.get(min1)));
-			else
-				rootList.set(min1, new Node(freq1+freq2, rootList.get(min1), rootList.get(min2)));
-			rootList.remove(min2);
-			
-			updateDisplay(rootList, "[" + title + "] Running iteration #" + iter);
+	public int decodeBatch(String source, String targetDir, int threads) {
+		return batch(false, source, targetDir, threads);
+	}
+	
+	private int batch(boolean encode, String source, String targetDir, int threads) {
+		try {
+			return new Batch(this, encode, observer == null ? threads : 1).run(Paths.get(source), Paths.get(targetDir));
+		} catch(IOException e) {
+			e.printStackTrace();
+			return -1;
 		}
-		
-		// finalize display and return
-		endDisplay();
-		if(rootList.size() <= 1) delay(1000);
-		return rootList.get(0);
 	}
 	
 	/**
-	 * Returns a string array containing the Huffman encryption codes for all characters, 
-	 * which are generated using the provided Huffman tree. The indexes of the returning
-	 * array represents the extended ASCII decimal code, and the element in that index
-	 * represents its encryption code.
+	 * Implements the Huffman encoding algorithm on all cores. The file is split
+	 * into blocks of blockSize bytes, whose frequencies are counted in parallel
+	 * and merged into one Huffman code. Every block is then encoded in parallel
+	 * on its own byte boundary, and the blocks are written in order behind a
+	 * block index. See Container for the layout of the file, which is decoded
+	 * by decode(inputFile, outputFile).
 	 * 
-	 * @param tree root of the Huffman tree
-	 * @return string array of encryption code
+	 * @param inputFile name of the file to encode
+	 * @param outputFile name assignment for the encoded file
+	 * @param blockSize number of original bytes per block
+	 * @param threads number of worker threads
 	 */
-	private String[] getCode(Node tree) {
-		if(tree.isLeaf()) {
-			String[] arr = new String[LIMIT];
-			arr[Integer.parseInt(tree.data,2)] = "0";
-			return arr;
-		} else return getCodeRecursive(tree, new String[LIMIT], "");
+	public void encodeParallel(String inputFile, String outputFile, int blockSize, int threads) {
+		encodeBlocks(inputFile, outputFile, blockSize, threads, false, 0);
 	}
 	
 	/**
-	 * The recursive algorithm for getCode method.
+	 * Implements the Huffman encoding algorithm on all cores for files whose
+	 * statistics change along the way, such as archives of mixed content.
+	 * Like encodeParallel, the file is split into blocks that are counted and
+	 * encoded in parallel, but every block gets a code built from its own
+	 * frequencies. A block keeps the code of the previous coded block instead
+	 * when its payload grows by at most reuseTolerance over its own code with
+	 * the code header, which saves the header and the decoding table. Blocks
+	 * that would not get smaller are stored as they are. The file is decoded
+	 * by decode(inputFile, outputFile) or decodeParallel.
 	 * 
-	 * @param tree root of the Huffman tree
-	 * @param codeList incomplete string array of encryption code
-	 * @param code encryption code
-	 * @return finished string array of encryption code
+	 * @param inputFile name of the file to encode
+	 * @param outputFile name assignment for the encoded file
+	 * @param blockSize number of original bytes per block
+	 * @param threads number of worker threads
+	 * @param reuseTolerance accepted relative growth of a block for keeping the previous code,
+	 *        0 to keep it only when it is smaller, or negative to never keep it
 	 */
-	private String[] getCodeRecursive(Node tree, String[] codeList, String code) {
-		if(tree.isLeaf()) codeList[Integer.parseInt(tree.data,2)] = code;
-		if(tree.left != null) getCodeRecursive(tree.left, codeList, code+"0");
-		if(tree.right != null) getCodeRecursive(tree.right, codeList, code+"1");
-		return codeList;
+	public void encodeAdaptive(String inputFile, String outputFile, int blockSize, int threads, double reuseTolerance) {
+		encodeBlocks(inputFile, outputFile, blockSize, threads, true, reuseTolerance);
 	}
 	
 	/**
-	 * Implements the Huffman algorithm to encrypt and potentially compress
-	 * the file.
+	 * Encodes a file in independent blocks, either with one code for the
+	 * whole file or with a code chosen per block.
 	 * 
-	 * @param inputFile name of the file to compress
-	 * @param outputFile name assignment for the compressed file
-	 * @param tree Huffman tree generated using the original frequency file
+	 * @param adaptive true to choose a code per block, see encodeAdaptive
+	 * @param reuseTolerance accepted relative growth for keeping the previous code, adaptive only
 	 */
-	private void compress(String inputFile, String outputFile, Node tree) {
-		String[] codedFreq = getCode(tree);
-
-		BinaryIn bi = new BinaryIn(inputFile);
-		BinaryOut bo = new BinaryOut(outputFile);
-		String bin;
-		char c;
-		
-		while(!bi.isEmpty()) {
-			c = bi.readChar();
-			bin = codedFreq[c];
+	private void encodeBlocks(String inputFile, String outputFile, int blockSize, int threads, boolean adaptive, double reuseTolerance) {
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try(FileChannel in = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ);
+			FileChannel out = FileChannel.open(Paths.get(outputFile), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			long length = in.size();
+			int blocks = Container.blockCount(length, blockSize);
+			MappedByteBuffer[] windows = MappedFile.map(in, FileChannel.MapMode.READ_ONLY, 0, length, blockSize);
+			
+			// count frequencies of all blocks in parallel
+			long[][] blockFreq = pool.submit(() -> IntStream.range(0, blocks).parallel()
+				.mapToObj(b -> Histogram.count(slice(windows, (long) b * blockSize, (int) Math.min(blockSize, length - (long) b * blockSize)), new long[LIMIT]))
+				.toArray(long[][]::new)).get();
+			
+			// pick the code of every block
+			Container header;
+			CanonicalCode[] blockCode = new CanonicalCode[blocks];
+			int[] blockType = null;
+			if(adaptive) {
+				header = new Container(length, blockSize, new int[blocks], new int[blocks]);
+				blockType = new int[blocks];
+				planBlocks(header, blockFreq, reuseTolerance, blockType, blockCode);
+			} else {
+				
+				// build the code lengths of the merged frequencies, limited to maxCodeLength
+				long[] rawFreq = Arrays.stream(blockFreq).reduce(new long[LIMIT], HuffmanSubmit::merge);
+				CanonicalCode code = code(rawFreq, length, "Encode");
+				header = new Container(length, code, blockSize, new int[blocks], new int[blocks]);
+				Arrays.fill(blockCode, code);
+			}
+			final int[] type = blockType;
+			
+			// encode blocks in parallel, keeping at most two blocks per thread in memory
+			long pos = header.headerSize();
+			Deque<ForkJoinTask<byte[]>> pending = new ArrayDeque<ForkJoinTask<byte[]>>();
+			int next = 0;
+			for(int b = 0; b < blocks; b++) {
+				while(next < blocks && pending.size() < 2 * threads) {
+					final int block = next++;
+					pending.add(pool.submit(() -> {
+						ByteBuffer data = slice(windows, (long) block * blockSize, header.blockBytes(block));
+						CRC32C crc = new CRC32C();
+						crc.update(data.duplicate());
+						header.blockCrc[block] = (int) crc.getValue();
 						
-			for(int i = 0; i < bin.length(); i++) {
-				if(bin.charAt(i) == '0') bo.write(false);
-				else bo.write(true);
+						ByteArrayOutputStream encoded = new ByteArrayOutputStream(data.remaining() / 2 + 16);
+						BinaryOut bo = new BinaryOut(encoded);
+						if(type != null) {
+							bo.write((byte) type[block]);
+							if(type[block] == Container.CODED_BLOCK) blockCode[block].writeHeader(bo);
+						}
+						if(type != null && type[block] == Container.RAW_BLOCK) {
+							byte[] raw = new byte[data.remaining()];
+							data.duplicate().get(raw);
+							bo.write(raw, 0, raw.length);
+						} else {
+							CanonicalCode code = blockCode[block];
+							byte[] lengths = new byte[LIMIT];
+							for(int i = 0; i < LIMIT; i++) lengths[i] = (byte) code.length[i];
+							BitWriter bw = new BitWriter(bo);
+							compressBlock(data, bw, code.code, lengths);
+							bw.flush();
+						}
+						bo.flush();
+						return encoded.toByteArray();
+					}));
+				}
+				byte[] encoded = pending.poll().join();
+				header.blockLength[b] = encoded.length;
+				writeFully(out, ByteBuffer.wrap(encoded), pos);
+				pos += encoded.length;
 			}
+			
+			// write the header with the finished block index
+			writeFully(out, ByteBuffer.wrap(headerBytes(header)), 0);
+			
+		} catch(IOException | InterruptedException | ExecutionException e) {
+			e.printStackTrace();
+		} finally {
+			pool.shutdown();
 		}
-		bo.flush();
 	}
 	
 	/**
-	 * Implements the Huffman algorithm to decrypt and potentially expand
-	 * the file.
+	 * Chooses the cheapest way to store every block of an adaptive container:
+	 * with a code of its own plus its header, with the code of the previous
+	 * coded block if that code has every byte of the block and grows it by at
+	 * most reuseTolerance, or as raw bytes. Sizes are compared in bits. The
+	 * compression lost where a code of its own is limited to maxCodeLength is
+	 * added up and reported once on standard error.
 	 * 
-	 * @param inputFile name of the file to expand
-	 * @param outputFile name assignment for the expanded file
-	 * @param tree Huffman tree generated using the original frequency file
+	 * @param header header of the container
+	 * @param blockFreq frequencies of each block
+	 * @param reuseTolerance accepted relative growth for keeping the previous code
+	 * @param type block type of each block, filled in
+	 * @param code code of each block, filled in; null for raw blocks
 	 */
-	private void expand(String inputFile, String outputFile, Node tree) {
-		BinaryIn bi = new BinaryIn(inputFile);
-		BinaryOut bo = new BinaryOut(outputFile);
-		boolean bit;
-		Node curr = tree;
-		
-		// reading the entire encrypted data by iterating with its Huffman tree
-		while(!bi.isEmpty()) {
+	private void planBlocks(Container header, long[][] blockFreq, double reuseTolerance, int[] type, CanonicalCode[] code) {
+		CanonicalCode previous = null;
+		int limited = 0; // number of coded blocks whose code was limited
+		long optimal = 0, bits = 0; // payload bits of those blocks with their Huffman and their limited codes
+		for(int b = 0; b < blockFreq.length; b++) {
+			long[] freq = blockFreq[b];
+			CanonicalCode huffman = CanonicalCode.build(freq);
+			CanonicalCode own = huffman.maxLength <= maxCodeLength ? huffman : new CanonicalCode(CanonicalCode.limitedLengths(freq, maxCodeLength));
+			long ownBits = 8L * own.headerSize() + own.encodedBits(freq);
+			long reusedBits = Long.MAX_VALUE;
+			if(previous != null && reuseTolerance >= 0) {
+				reusedBits = previous.encodedBits(freq);
+				for(int i = 0; i < LIMIT; i++)
+					if(freq[i] > 0 && previous.length[i] == 0) reusedBits = Long.MAX_VALUE;
+			}
 			
-			// if current node is a leaf
-			// write original binary data
-			if(curr.isLeaf()) {
-				for(int i = curr.data.length(); i < BIT; i++) bo.write(false);
-				
-				for(char b : curr.data.toCharArray()) {
-					if(b == '0') bo.write(false);
-					else bo.write(true);
+			// stored sizes include the block type and the padding to whole bytes
+			long rawBits = 8L * header.blockBytes(b);
+			if(reusedBits != Long.MAX_VALUE && reusedBits <= ownBits * (1 + reuseTolerance) && reusedBits + 7 < rawBits) {
+				type[b] = Container.REUSED_BLOCK;
+				code[b] = previous;
+			} else if(ownBits + 7 < rawBits) {
+				type[b] = Container.CODED_BLOCK;
+				code[b] = own;
+				previous = own;
+				if(own != huffman) {
+					limited++;
+					optimal += huffman.encodedBits(freq);
+					bits += own.encodedBits(freq);
 				}
-				curr = tree;
-			
-			// if current node is not a leaf (is an internal node)
-			// read and move further down the tree
 			} else {
-				bit = bi.readBoolean();
-				if(!bit && curr.left != null) curr = curr.left;
-				else if(curr.right != null) curr = curr.right;
+				type[b] = Container.RAW_BLOCK;
 			}
 		}
-		bo.flush();
+		if(limited > 0)
+			System.err.printf("Code lengths of %d blocks limited to %d bits: %d more payload bits (+%.4f%%)%n",
+				limited, maxCodeLength, bits - optimal, 100.0 * (bits - optimal) / optimal);
 	}
 	
 	/**
-	 * Creates a separate large window, which will be used to display the tree.
+	 * Implements the Huffman decoding algorithm on all cores for a file written
+	 * by encodeParallel or encodeAdaptive. Every block is read, decoded and
+	 * checked on its own thread and written straight to its position in the
+	 * decoded file. Files without a block index are decoded serially.
 	 * 
-	 * @param tree the Huffman tree to display
+	 * @param inputFile name of the file to decode
+	 * @param outputFile name assignment for the decoded file
+	 * @param threads number of worker threads
+	 * @throws IllegalArgumentException if the file is not a valid container or is corrupt
 	 */
-	private void openDisplay() {
-		if(!DISPLAY || F != null) return;
+	public void decodeParallel(String inputFile, String outputFile, int threads) {
 		
-		F = new Frame();
+		try {
+			
+			// get and validate header
+			Container header = readHeader(inputFile);
+			if(header.version == Container.STREAM) decodeContainer(inputFile, outputFile);
+			else decodeBlocks(inputFile, outputFile, header, threads);
+		} catch(IOException e) {
+			e.printStackTrace();
+		}
 	}
 	
 	/**
-	 * Displays the Huffman tree at any stage of its generation, followed by a
-	 * set delay: DELAY. Using this method may cause the runtime to increase 
-	 * significantly
+	 * Decodes the blocks of a container with a block index in parallel.
+	 * 
+	 * @param header validated header of the input file
+	 * @param threads number of worker threads
+	 * @throws IOException if a file cannot be read or written
+	 * @throws IllegalArgumentException if the file is corrupt
 	 */
-	private void updateDisplay(List<Node> forest, String title) {
-		if(!DISPLAY) return;
+	private static void decodeBlocks(String inputFile, String outputFile, Container header, int threads) throws IOException {
 		
-		delay();
-		F.showComponents();
-		F.updateContent(forest, title);
-		F.repaint();
-		F.revalidate();
+		// find where each block starts in the encoded file
+		int blocks = header.blockLength.length;
+		long[] offset = new long[blocks];
+		long pos = header.headerSize();
+		for(int b = 0; b < blocks; b++) {
+			offset[b] = pos;
+			pos += header.blockLength[b];
+		}
+		
+		// decode blocks in parallel into their positions in the decoded file
+		ForkJoinPool pool = new ForkJoinPool(threads);
+		try(FileChannel in = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ);
+			FileChannel out = FileChannel.open(Paths.get(outputFile), StandardOpenOption.WRITE,
+				StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING)) {
+			TableDecoder[] decoders = new TableDecoder[blocks];
+			int[] skip = new int[blocks];
+			if(header.version == Container.ADAPTIVE) blockDecoders(in, header, offset, decoders, skip);
+			else Arrays.fill(decoders, new TableDecoder(header.code));
+			
+			pool.submit(() -> IntStream.range(0, blocks).parallel().forEach(b -> {
+				byte[] encoded = readBlock(in, offset[b], header.blockLength[b]);
+				byte[] data;
+				if(decoders[b] == null) {
+					data = Arrays.copyOfRange(encoded, skip[b], encoded.length);
+				} else {
+					data = new byte[header.blockBytes(b)];
+					try {
+						decoders[b].decode(new BitReader(encoded, skip[b], encoded.length - skip[b]), data, 0, data.length);
+					} catch(NoSuchElementException e) {
+						throw new IllegalArgumentException("Block " + b + " of " + inputFile + " is truncated", e);
+					}
+				}
+				
+				CRC32C crc = new CRC32C();
+				crc.update(data, 0, data.length);
+				if(header.blockCrc[b] != (int) crc.getValue())
+					throw new IllegalArgumentException("Checksum mismatch in block " + b + ", " + inputFile + " is corrupt");
+				try {
+					writeFully(out, ByteBuffer.wrap(data), (long) b * header.blockSize);
+				} catch(IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			})).get();
+			
+		} catch(ExecutionException e) {
+			if(e.getCause() instanceof UncheckedIOException) throw ((UncheckedIOException) e.getCause()).getCause();
+			if(e.getCause() instanceof RuntimeException) throw (RuntimeException) e.getCause();
+			throw new IOException(e.getCause());
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Decoding " + inputFile + " was interrupted");
+		} finally {
+			pool.shutdown();
+		}
 	}
 	
 	/**
-	 * Called at the end of tree generation animation. Simply hides the UI
-	 * components.
+	 * Reads the block type and code header at the start of every block of an
+	 * adaptive container, so the blocks can then be decoded in any order.
+	 * Reused blocks share the decoder of the coded block before them.
+	 * 
+	 * @param in channel of the encoded file
+	 * @param header validated header of the encoded file
+	 * @param offset position of each block in the encoded file
+	 * @param decoders decoder of each block, filled in; null for raw blocks
+	 * @param skip number of bytes before the payload of each block, filled in
+	 * @throws IllegalArgumentException if a block type or code header is malformed
 	 */
-	private void endDisplay() {
-		F.hideComponents();
+	static void blockDecoders(FileChannel in, Container header, long[] offset, TableDecoder[] decoders, int[] skip) {
+		TableDecoder previous = null;
+		for(int b = 0; b < decoders.length; b++) {
+			byte[] start = readBlock(in, offset[b], Math.min(header.blockLength[b], 2 + CanonicalCode.LIMIT));
+			int type = start[0];
+			skip[b] = 1;
+			if(type == Container.RAW_BLOCK) {
+				if(header.blockLength[b] != 1 + header.blockBytes(b))
+					throw new IllegalArgumentException("Raw block " + b + " has " + (header.blockLength[b] - 1) + " bytes instead of " + header.blockBytes(b));
+			} else if(type == Container.CODED_BLOCK) {
+				CanonicalCode code;
+				try {
+					code = CanonicalCode.readHeader(new BinaryIn(new ByteArrayInputStream(start, 1, start.length - 1)));
+				} catch(NoSuchElementException e) {
+					throw new IllegalArgumentException("Code header of block " + b + " is truncated", e);
+				}
+				if(code.maxLength == 0) throw new IllegalArgumentException("Block " + b + " has no code for its data");
+				previous = new TableDecoder(code);
+				decoders[b] = previous;
+				skip[b] += code.headerSize();
+			} else if(type == Container.REUSED_BLOCK && previous != null) {
+				decoders[b] = previous;
+			} else {
+				throw new IllegalArgumentException("Illegal type " + type + " of block " + b);
+			}
+		}
 	}
 	
 	/**
-	 * Triggers a delay of DELAY milliseconds. Used for delays between each
-	 * animation frame.
+	 * Reads and validates the header of a container file. The file is closed
+	 * again before returning, so no handle is left open until the reader is
+	 * garbage collected.
+	 * 
+	 * @param file name of the container file
+	 * @return the validated header
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the file is not a valid container
 	 */
-	private void delay() {
-		try {
-			Thread.sleep(DELAY);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+	static Container readHeader(String file) throws IOException {
+		try(InputStream is = Files.newInputStream(Paths.get(file))) {
+			return Container.read(new BinaryIn(is), new File(file).length());
+		} catch(NoSuchElementException e) {
+			throw new IllegalArgumentException("Header of " + file + " is truncated", e);
 		}
 	}
 	
 	/**
-	 * Triggers a delay of given amount of milliseconds.
+	 * Reads len bytes of a file starting at pos. Safe to call from several
+	 * threads on the same channel.
 	 * 
-	 * @param delay delay in milliseconds
+	 * @param ch channel of the file
+	 * @param pos position of the first byte
+	 * @param len number of bytes
+	 * @return the bytes read
 	 */
-	private void delay(int delay) {
+	static byte[] readBlock(FileChannel ch, long pos, int len) {
+		ByteBuffer buf = ByteBuffer.allocate(len);
 		try {
-			Thread.sleep(delay);
-		} catch (InterruptedException e) {
-			e.printStackTrace();
+			while(buf.hasRemaining())
+				if(ch.read(buf, pos + buf.position()) < 0) throw new EOFException("File ended at " + (pos + buf.position()));
+		} catch(IOException e) {
+			throw new UncheckedIOException(e);
 		}
+		return buf.array();
 	}
 	
 	/**
-	 * Implements the Huffman encoding algorithm.
+	 * Writes all remaining bytes of the buffer to a file starting at pos.
 	 * 
-	 * @param inputFile name of the file to encode
-	 * @param outputFile name assignment for the encoded file
-	 * @param freqFile name assignment for the frequency file
+	 * @param ch channel of the file
+	 * @param buf bytes to write
+	 * @param pos position of the first byte
 	 */
-	public void encode(String inputFile, String outputFile, String freqFile) {
-		
-		// get data from file
-		BinaryIn bi = new BinaryIn(inputFile);
-		int[] rawFreq = new int[LIMIT];
-		while(!bi.isEmpty()) rawFreq[bi.readChar()] += 1;
-
-		// write frequency file
-		BinaryOut bo = new BinaryOut(freqFile);
-		for(int i = 0; i < rawFreq.length; i++)
-			bo.write(Integer.toBinaryString(i) + ":" + rawFreq[i] + "\n");
-		bo.flush();
-		
-		// build huffman tree
-		openDisplay();
-		Node tree = buildTree(rawFreq, "Encode");
-		
-		// write compressed file
-		compress(inputFile, outputFile, tree);
+	private static void writeFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+		while(buf.hasRemaining()) pos += ch.write(buf, pos);
 	}
 	
 	/**
-	 * Implements the Huffman decoding algorithm.
+	 * Returns a view of len bytes starting at the given file position, taken
+	 * from windows mapped with MappedFile.map. The bytes must not cross the
+	 * boundary of a window.
 	 * 
-	 * @param inputFile name of the file to decode
-	 * @param outputFile name assignment for the decoded file
-	 * @param freqFile name of the frequency file
+	 * @param windows mapped windows of the file
+	 * @param start position of the first byte in the file
+	 * @param len number of bytes
+	 * @return view of the bytes
 	 */
-	public void decode(String inputFile, String outputFile, String freqFile) {
-		
-		// get frequency file
-		int[] rawFreq = new int[LIMIT];
-		try {
-			BufferedReader br = new BufferedReader(new FileReader(freqFile));
-			int n = 0;
-			String line;
+	private static ByteBuffer slice(MappedByteBuffer[] windows, long start, int len) {
+		long size = windows[0].capacity();
+		int off = (int) (start % size);
+		return windows[(int) (start / size)].duplicate().position(off).limit(off + len).slice();
+	}
+	
+	/**
+	 * Counts the characters of a sample of sampleSize bytes of a mapped file,
+	 * taken from sampleStrides evenly spaced chunks. Only the sampled pages
+	 * are read from disk. Every character gets a count of at least 1, so
+	 * characters missing from the sample can still be encoded.
+	 * 
+	 * @param windows mapped windows of the file, as returned by MappedFile.map with align 1
+	 * @param count number of bytes in the file, more than sampleSize
+	 * @return estimated frequency of each character
+	 */
+	private long[] sample(MappedByteBuffer[] windows, long count) {
+		long[] freq = new long[LIMIT];
+		long size = windows[0].capacity();
+		int strides = (int) Math.min(sampleStrides, sampleSize);
+		long chunk = sampleSize / strides;
+		for(int i = 0; i < strides; i++) {
+			long start = strides == 1 ? 0 : i * ((count - chunk) / (strides - 1));
 			
-			while(true) {
-				line = br.readLine();
-				if(line == null) break;
-				rawFreq[n] = Integer.parseInt(line.substring(line.indexOf(":")+1));
-				n++;
+			// a chunk may cross the boundary between two windows
+			for(long left = chunk; left > 0; ) {
+				int len = (int) Math.min(left, size - start % size);
+				Histogram.count(slice(windows, start, len), freq);
+				start += len;
+				left -= len;
 			}
-			br.close();
-			
+		}
+		for(int i = 0; i < LIMIT; i++) freq[i] = Math.max(freq[i], 1);
+		return freq;
+	}
+	
+	/**
+	 * Counts the characters of a whole file through memory-mapped windows.
+	 * 
+	 * @param inputFile name of the file to count
+	 * @return frequency of each character, or null if the file cannot be read
+	 */
+	private static long[] countFile(String inputFile) {
+		try(FileChannel in = FileChannel.open(Paths.get(inputFile), StandardOpenOption.READ)) {
+			long[] freq = new long[LIMIT];
+			for(MappedByteBuffer w : MappedFile.map(in, FileChannel.MapMode.READ_ONLY, 0, in.size(), 1)) Histogram.count(w, freq);
+			return freq;
 		} catch(IOException e) {
 			e.printStackTrace();
+			return null;
 		}
-		
-		// build huffman tree
-		openDisplay();
-		Node tree = buildTree(rawFreq, "Decode");
-		
-		// write expanded file
-		expand(inputFile, outputFile, tree);
+	}
+	
+	/**
+	 * Adds two frequency arrays.
+	 * 
+	 * @return array of summed frequencies
+	 */
+	private static long[] merge(long[] a, long[] b) {
+		long[] sum = new long[LIMIT];
+		for(int i = 0; i < LIMIT; i++) sum[i] = a[i] + b[i];
+		return sum;
+	}
+	
+	/**
+	 * Encodes the remaining bytes of the buffer with the given codes. The
+	 * position of the buffer is not changed.
+	 * 
+	 * @param data bytes to encode
+	 * @param bw bit writer for the encoded bits
+	 * @param codes encryption code of each character
+	 * @param lengths number of bits in the encryption code of each character
+	 */
+	private static void compressBlock(ByteBuffer data, BitWriter bw, long[] codes, byte[] lengths) {
+		int c;
+		for(int i = data.position(); i < data.limit(); i++) {
+			c = data.get(i) & 0xff;
+			bw.write(codes[c], lengths[c]);
+		}
+	}
+	
+	/**
+	 * Returns the canonical code of the given frequencies, limited to
+	 * maxCodeLength. The tree is only built merge by merge when an observer
+	 * watches it; headless runs use the O(n log n) builder of CanonicalCode.
+	 * 
+	 * @param freq frequency of each character
+	 * @param count number of characters
+	 * @param title title of the tree generation shown by the observer
+	 * @return code with no code longer than maxCodeLength
+	 */
+	private CanonicalCode code(long[] freq, long count, String title) {
+		if(observer == null || count == 0) return limit(CanonicalCode.build(freq), freq);
+		return limit(new CanonicalCode(CanonicalCode.lengths(buildTree(freq, title))), freq);
+	}
+	
+	/**
+	 * Returns the given code if none of its codes is longer than maxCodeLength,
+	 * or else the optimal code with lengths of at most maxCodeLength bits. The
+	 * compression lost to the limit is reported on standard error.
+	 * 
+	 * @param code Huffman code of the frequencies
+	 * @param freq frequency of each character
+	 * @return code with no code longer than maxCodeLength
+	 */
+	private CanonicalCode limit(CanonicalCode code, long[] freq) {
+		if(code.maxLength <= maxCodeLength) return code;
+		CanonicalCode limited = new CanonicalCode(CanonicalCode.limitedLengths(freq, maxCodeLength));
+		long optimal = code.encodedBits(freq), bits = limited.encodedBits(freq);
+		System.err.printf("Code lengths limited from %d to %d bits: %d more payload bits (+%.4f%%)%n",
+			code.maxLength, maxCodeLength, bits - optimal, 100.0 * (bits - optimal) / optimal);
+		return limited;
+	}
+	
+	/**
+	 * Returns the bytes of a container header.
+	 * 
+	 * @param header the header
+	 * @return bytes written by header.write
+	 */
+	private static byte[] headerBytes(Container header) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		BinaryOut bo = new BinaryOut(bytes);
+		header.write(bo);
+		bo.flush();
+		return bytes.toByteArray();
 	}
 	
 	/**
@@ -706,19 +1268,132 @@ public class HuffmanSubmit implements Huffman {
 	 * --encode (file to encode) (encoded file name) (frequency table file name)
 	 * OR
 	 * --decode (file to decode) (decoded file name) (frequency table file)
+	 * OR
+	 * --encode-canonical (file to encode) (encoded file name) (code length header file name)
+	 * OR
+	 * --decode-canonical (file to decode) (decoded file name) (code length header file)
+	 * OR
+	 * --encode (file to encode) (encoded file name)
+	 * OR
+	 * --decode (file to decode) (decoded file name)
+	 * OR
+	 * --encode-parallel (file to encode) (encoded file name)
+	 * OR
+	 * --decode-parallel (file to decode) (decoded file name)
+	 * OR
+	 * --encode-adaptive (file to encode) (encoded file name) [reuse tolerance]
+	 * OR
+	 * --encode-batch (directory or file list to encode) (output directory)
+	 * OR
+	 * --train (sample file or directory) (table directory), printing the table id
+	 * OR
+	 * --encode-shared (file to encode) (encoded file name) (table directory) (table id)
+	 * OR
+	 * --decode-shared (file to decode) (decoded file name) (table directory)
+	 * OR
+	 * --index (encoded file) [kilobytes between checkpoints]
+	 * OR
+	 * --read-range (encoded file) (offset) (length) (output file name)
+	 * OR
+	 * --decode-batch (directory or file list to decode) (output directory)
+	 * OR
+	 * --encode-stream, reading standard input and writing standard output
+	 * OR
+	 * --decode-stream, reading standard input and writing standard output
+	 * 
+	 * Any of the canonical, container and stream modes may be preceded by
+	 * --max-length (bits) to set the longest code length (default 12).
+	 * Any mode may be preceded by --display to show the generation of the
+	 * Huffman tree in a window; without it, nothing is displayed.
+	 * --encode with two files may be preceded by --sample (megabytes) (strides)
+	 * to build the code from a sample of the file instead of counting it all.
 	 * 
 	 * Example:
 	 * --encode alice30.txt alice30.enc freq.txt
 	 * --decode alice30.en alice30.txt freq.txt
+	 * --encode-canonical alice30.txt alice30.enc lengths.bin
+	 * --encode alice30.txt alice30.huf
+	 * --max-length 15 --encode alice30.txt alice30.huf
+	 * --display --encode alice30.txt alice30.huf
+	 * --sample 64 16 --encode archive.tar archive.huf
+	 * --encode-adaptive archive.tar archive.huf 0.01
+	 * --encode-batch logs/ logs.huf/
+	 * --train samples/ tables/
+	 * --encode-shared record.json record.huf tables/ 1a2b3c4d
+	 * --read-range server.log.huf 1073741824 4096 slice.txt
 	 */
 	public static void main(String[] args) {
-		Huffman huffman = new HuffmanSubmit();
+		HuffmanSubmit huffman = new HuffmanSubmit();
 		
-		if(args[0].equals("--encode")) {
+		// options before the mode, in any order
+		while(true) {
+			if(args[0].equals("--display")) {
+				huffman.setObserver(new TreeDisplay());
+				args = Arrays.copyOfRange(args, 1, args.length);
+			} else if(args[0].equals("--max-length")) {
+				huffman.setMaxCodeLength(Integer.parseInt(args[1]));
+				args = Arrays.copyOfRange(args, 2, args.length);
+			} else if(args[0].equals("--sample")) {
+				huffman.setSample(Long.parseLong(args[1]) << 20, Integer.parseInt(args[2]));
+				args = Arrays.copyOfRange(args, 3, args.length);
+			} else break;
+		}
+		
+		// stream modes write to standard output directly, since System.out hides write errors such as a closed pipe
+		if(args[0].equals("--encode-stream")) {
+			huffman.encodeStream(System.in, new FileOutputStream(FileDescriptor.out), BLOCK_SIZE);
+			
+		} else if(args[0].equals("--decode-stream")) {
+			huffman.decodeStream(System.in, new FileOutputStream(FileDescriptor.out));
+			
+		} else if(args[0].equals("--encode-parallel")) {
+			huffman.encodeParallel(args[1], args[2], BLOCK_SIZE, Runtime.getRuntime().availableProcessors());
+			
+		} else if(args[0].equals("--encode-adaptive")) {
+			double reuseTolerance = args.length > 3 ? Double.parseDouble(args[3]) : REUSE_TOLERANCE;
+			huffman.encodeAdaptive(args[1], args[2], BLOCK_SIZE, Runtime.getRuntime().availableProcessors(), reuseTolerance);
+			
+		} else if(args[0].equals("--encode-batch")) {
+			if(huffman.encodeBatch(args[1], args[2], Runtime.getRuntime().availableProcessors()) != 0) System.exit(1);
+			
+		} else if(args[0].equals("--decode-batch")) {
+			if(huffman.decodeBatch(args[1], args[2], Runtime.getRuntime().availableProcessors()) != 0) System.exit(1);
+			
+		} else if(args[0].equals("--train")) {
+			System.out.printf("%08x%n", huffman.train(args[1], args[2]));
+			
+		} else if(args[0].equals("--encode-shared")) {
+			huffman.encodeShared(args[1], args[2], args[3], Integer.parseUnsignedInt(args[4], 16));
+			
+		} else if(args[0].equals("--decode-shared")) {
+			huffman.decodeShared(args[1], args[2], args[3]);
+			
+		} else if(args[0].equals("--index")) {
+			huffman.index(args[1], args.length > 2 ? Integer.parseInt(args[2]) << 10 : SeekableReader.DEFAULT_INTERVAL);
+			
+		} else if(args[0].equals("--read-range")) {
+			huffman.readRange(args[1], Long.parseLong(args[2]), Integer.parseInt(args[3]), args[4]);
+			
+		} else if(args[0].equals("--decode-parallel")) {
+			huffman.decodeParallel(args[1], args[2], Runtime.getRuntime().availableProcessors());
+			
+		} else if(args[0].equals("--encode") && args.length == 3) {
+			huffman.encode(args[1], args[2]);
+			
+		} else if(args[0].equals("--decode") && args.length == 3) {
+			huffman.decode(args[1], args[2]);
+			
+		} else if(args[0].equals("--encode")) {
 			huffman.encode(args[1], args[2], args[3]);
 			
 		} else if(args[0].equals("--decode")) {
 			huffman.decode(args[1], args[2], args[3]);
+			
+		} else if(args[0].equals("--encode-canonical")) {
+			huffman.encodeCanonical(args[1], args[2], args[3]);
+			
+		} else if(args[0].equals("--decode-canonical")) {
+			huffman.decodeCanonical(args[1], args[2], args[3]);
 		}
 	}
 }
@@ -0,0 +1,64 @@
+
+/**
+ * This class holds a Huffman tree in flat arrays of primitive ints instead
+ * of linked nodes. Leaves are identified by their symbols, from 0 to LIMIT-1,
+ * and internal nodes by ids from LIMIT upward in order of creation, so the id
+ * of a leaf is its symbol and every parent has a larger id than its children.
+ */
+class HuffmanTree {
+	
+	// general final variables
+	static final int LIMIT = 256; // number of symbols
+	
+	final int[] left = new int[2*LIMIT - 1]; // left child of each internal node
+	final int[] right = new int[2*LIMIT - 1]; // right child of each internal node
+	final long[] freq = new long[2*LIMIT - 1]; // frequency of each node
+	int nodes; // number of internal nodes
+	int root = -1; // id of the root, -1 while the tree is empty
+	
+	// class constructor for the leaves of the given frequencies
+	HuffmanTree(long[] freq) {
+		System.arraycopy(freq, 0, this.freq, 0, LIMIT);
+	}
+	
+	/**
+	 * Checks and returns whether the node is a leaf or not.
+	 * 
+	 * @param id id of the node
+	 * @return true if the node is a leaf; otherwise false
+	 */
+	static boolean isLeaf(int id) {
+		return id < LIMIT;
+	}
+	
+	/**
+	 * Creates an internal node with the given children.
+	 * 
+	 * @param l id of the left child
+	 * @param r id of the right child
+	 * @return id of the new node
+	 */
+	int merge(int l, int r) {
+		int id = LIMIT + nodes++;
+		left[id] = l;
+		right[id] = r;
+		freq[id] = freq[l] + freq[r];
+		return id;
+	}
+	
+	/**
+	 * Returns the depth of every node below the root. Since every parent has
+	 * a larger id than its children, the depths are filled from the root down
+	 * without recursion.
+	 * 
+	 * @return array of depths indexed by node id
+	 */
+	int[] depths() {
+		int[] depth = new int[2*LIMIT - 1];
+		for(int id = LIMIT + nodes - 1; id >= LIMIT; id--) {
+			depth[left[id]] = depth[id] + 1;
+			depth[right[id]] = depth[id] + 1;
+		}
+		return depth;
+	}
+}
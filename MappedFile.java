@@ -0,0 +1,36 @@
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class maps a region of a file into memory. A single MappedByteBuffer
+ * cannot be larger than 2 GB, so the region is split into windows of at most
+ * WINDOW_SIZE bytes. The data is read straight from the page cache, without
+ * copying it into the Java heap.
+ */
+class MappedFile {
+
+	// general final variables
+	static final int WINDOW_SIZE = 1 << 30; // largest window in bytes
+
+	/**
+	 * Maps len bytes of a file starting at pos into consecutive windows.
+	 *
+	 * @param ch channel of the file
+	 * @param mode map mode of the windows
+	 * @param pos position of the first byte
+	 * @param len number of bytes
+	 * @param align every window except the last holds a multiple of align bytes
+	 * @return windows covering the region in order
+	 * @throws IOException if the region cannot be mapped
+	 */
+	static MappedByteBuffer[] map(FileChannel ch, FileChannel.MapMode mode, long pos, long len, int align) throws IOException {
+		long size = Math.max(align, WINDOW_SIZE / align * align);
+		int count = (int) ((len + size - 1) / size);
+		MappedByteBuffer[] windows = new MappedByteBuffer[count];
+		for(int w = 0; w < count; w++)
+			windows[w] = ch.map(mode, pos + w * size, Math.min(size, len - w * size));
+		return windows;
+	}
+}
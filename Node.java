@@ -0,0 +1,36 @@
+
+/**
+ * This class deals with the node for Huffman tree, along with some
+ * basic functions. The codec itself works on HuffmanTree; nodes are only
+ * linked up for the tree display.
+ * 
+ * @author Kyounghan Min
+ */
+class Node {
+	int symbol; // symbol of a leaf
+	long freq;
+	Node left, right;
+	
+	// class constructor for generating a leaf
+	Node(int symbol, long freq) {
+		this.symbol = symbol;
+		this.freq = freq;
+	}
+	
+	// class constructor for generating an internal node
+	Node(long freq, Node left, Node right) {
+		this.freq = freq;
+		this.left = left;
+		this.right = right;
+	}
+	
+	/**
+	 * Checks and returns whether the node is a leaf or not.
+	 * 
+	 * @return true if the node is a leaf; otherwise false
+	 */
+	boolean isLeaf() {
+		if(left == null && right == null) return true;
+		return false;
+	}
+}
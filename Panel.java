@@ -0,0 +1,222 @@
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.swing.JCheckBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import javax.swing.JSlider;
+
+/**
+ * This class initializes and assign functions regarding the UI 
+ * components and Huffman tree display in the window. 
+ * Implements JPanel class.
+ * 
+ * @author Kyounghan Min
+ */
+class Panel extends JPanel {
+
+	private static final long serialVersionUID = 1L;
+	
+	// display options
+	private static int FONT_SIZE = 7; // data font size
+	private static boolean SHOW_LEAF_FREQ = false; // display data frequency in leaves
+	private static boolean HIDE_INTERNAL_NODES = false; // hide internal nodes
+	private static boolean TRANSLUCENT_BRANCHES = false; // translucent branches
+	private static boolean BINARY_DISPLAY = false; // data display in binary
+	
+	// panel dimensions
+	private static final int DEFAULT_WIDTH = 1300, DEFAULT_HEIGHT = 900;
+	
+	// font presets
+	private final Font bigFont = new Font("Monospace", Font.BOLD, 18); // font for title
+	private Font smallFont = new Font("Monospace", Font.BOLD, FONT_SIZE); // font for data display
+	
+	// UI components
+	private static JCheckBox showLeafFreq, hideInternalNodes, translucentBranches, binaryDisplay;
+	private static JSlider fontSize, fps;
+	private static JLabel fsLabel, fpsLabel;
+	
+	// miscellaneous variables
+	protected List<Node> forest;
+	protected String title;
+	private final TreeRenderer renderer = new TreeRenderer(); // layout of the forest
+	private BufferedImage image; // drawn panel, null when it has to be redrawn
+	
+	// class constructor
+	Panel(Node[] forest, String title) {
+		setSize(DEFAULT_WIDTH,DEFAULT_HEIGHT);
+		this.forest = new ArrayList<Node>();
+		this.title = title;
+		setLayout(null);
+		
+		// initialize all UI components
+		// checkbox: show data frequencies in leaves - on/off
+		showLeafFreq = new JCheckBox("Show frequencies of leaves");
+		showLeafFreq.setBounds(750,20,260,20);
+		add(showLeafFreq);
+		
+		// checkbox: hide internal nodes - on/off
+		hideInternalNodes = new JCheckBox("Hide internal nodes");
+		hideInternalNodes.setBounds(750,40,260,20);
+		add(hideInternalNodes);
+		
+		// checkbox: set branches and leaf borders as translucent - on/off
+		translucentBranches = new JCheckBox("Translucent branches");
+		translucentBranches.setBounds(750,60,260,20);
+		add(translucentBranches);
+		
+		// checkbox: display data as binary - on/off
+		binaryDisplay = new JCheckBox("Display data in binary");
+		binaryDisplay.setBounds(750,80,260,20);
+		add(binaryDisplay);
+		
+		// slider: font size
+		fontSize = new JSlider();
+		fontSize.setBounds(1040,20,240,40);
+		fontSize.setValue(FONT_SIZE);
+		fontSize.setMaximum(20);
+		fontSize.setPaintTicks(true);
+		fontSize.setPaintLabels(true);
+		fontSize.setMajorTickSpacing(5);
+		fontSize.setMinorTickSpacing(1);
+		fontSize.setPaintTrack(false);
+		add(fontSize);
+		
+		// slider: FPS
+		fps = new JSlider();
+		fps.setBounds(1040,60,240,40);
+		fps.setValue(1000/TreeDisplay.DELAY);
+		fps.setMinimum(1);
+		fps.setPaintTicks(true);
+		fps.setPaintLabels(true);
+		fps.setMajorTickSpacing(20);
+		fps.setMinorTickSpacing(5);
+		fps.setPaintTrack(false);
+		fps.setMaximum(101);
+		add(fps);
+		
+		// label: font size slider
+		fsLabel = new JLabel("Font:");
+		fsLabel.setBounds(1000,20,40,40);
+		add(fsLabel);
+		
+		// label: FPS slider
+		fpsLabel = new JLabel("FPS:");
+		fpsLabel.setBounds(1000,60,40,40);
+		add(fpsLabel);
+		
+		// redraw only when an option changes, instead of reading them on every paint
+		showLeafFreq.addItemListener(e -> optionsChanged());
+		hideInternalNodes.addItemListener(e -> optionsChanged());
+		translucentBranches.addItemListener(e -> optionsChanged());
+		binaryDisplay.addItemListener(e -> optionsChanged());
+		fontSize.addChangeListener(e -> optionsChanged());
+		fps.addChangeListener(e -> TreeDisplay.DELAY = 1000/fps.getValue());
+	}
+	
+	/**
+	 * Sets the visibility of all UI components as true.
+	 */
+	public void showComponents() {
+		showLeafFreq.setVisible(true);
+		hideInternalNodes.setVisible(true);
+		translucentBranches.setVisible(true);
+		binaryDisplay.setVisible(true);
+		fontSize.setVisible(true);
+		fps.setVisible(true);
+		fsLabel.setVisible(true);
+		fpsLabel.setVisible(true);
+	}
+	
+	/**
+	 * Sets the visibility of all UI components as false.
+	 */
+	public void hideComponents() {
+		showLeafFreq.setVisible(false);
+		hideInternalNodes.setVisible(false);
+		translucentBranches.setVisible(false);
+		binaryDisplay.setVisible(false);
+		fontSize.setVisible(false);
+		fps.setVisible(false);
+		fsLabel.setVisible(false);
+		fpsLabel.setVisible(false);
+	}
+	
+	/**
+	 * Replaces the displayed forest and title, and lays the forest out again.
+	 * 
+	 * @param forest list of Huffman tree roots to display
+	 * @param title title for the display
+	 */
+	public void setContent(List<Node> forest, String title) {
+		this.forest = forest;
+		this.title = title;
+		renderer.layout(forest, DEFAULT_WIDTH/2, 150);
+		image = null;
+	}
+	
+	/**
+	 * Basic overriding paint method.
+	 * Called automatically when panel is updated.
+	 * Draws the cached image of the forest, which is only redrawn after the
+	 * forest or the display options change.
+	 */
+	@Override
+	public void paintComponent(Graphics g) {
+		if(image == null) image = render();
+		g.drawImage(image, 0, 0, null);
+	}
+	
+	/**
+	 * Draws the background, the forest and the title into a new image.
+	 * 
+	 * @return image of the whole panel
+	 */
+	private BufferedImage render() {
+		BufferedImage img = new BufferedImage(DEFAULT_WIDTH, DEFAULT_HEIGHT, BufferedImage.TYPE_INT_RGB);
+		Graphics2D g = img.createGraphics();
+		
+		// antialiasing for smooth graphics
+		g.setRenderingHint(RenderingHints.KEY_ANTIALIASING,RenderingHints.VALUE_ANTIALIAS_ON);
+		g.setColor(Color.lightGray);
+		g.fillRect(0,0,DEFAULT_WIDTH,DEFAULT_HEIGHT);
+		g.setColor(Color.white);
+		g.fillRect(TreeRenderer.LEFT,TreeRenderer.TOP,TreeRenderer.RIGHT-TreeRenderer.LEFT,TreeRenderer.BOTTOM-TreeRenderer.TOP);
+		g.setColor(Color.black);
+		g.drawRect(TreeRenderer.LEFT,TreeRenderer.TOP,TreeRenderer.RIGHT-TreeRenderer.LEFT,TreeRenderer.BOTTOM-TreeRenderer.TOP);
+		
+		// Draw trie
+		g.setFont(smallFont);
+		renderer.draw(g, SHOW_LEAF_FREQ, HIDE_INTERNAL_NODES, TRANSLUCENT_BRANCHES, BINARY_DISPLAY);
+		
+		// Create label indicating which command is being run
+		g.setColor(Color.black);
+		g.setFont(bigFont);
+		g.drawString(title, 50, 50);
+		g.dispose();
+		return img;
+	}
+	
+	/**
+	 * Reads the display options from the UI components and redraws the forest.
+	 */
+	private void optionsChanged() {
+		SHOW_LEAF_FREQ = showLeafFreq.isSelected();
+		HIDE_INTERNAL_NODES = hideInternalNodes.isSelected();
+		TRANSLUCENT_BRANCHES = translucentBranches.isSelected();
+		BINARY_DISPLAY = binaryDisplay.isSelected();
+		if(FONT_SIZE != fontSize.getValue()) {
+			FONT_SIZE = fontSize.getValue();
+			smallFont = new Font("Monospace", Font.BOLD, FONT_SIZE);
+		}
+		image = null;
+		repaint();
+	}
+}
@@ -0,0 +1,304 @@
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32C;
+
+/**
+ * This class reads byte ranges of a container file without decoding it from
+ * the beginning. A sparse checkpoint index holds the position in the
+ * original data and the bit position in the file at least every interval
+ * original bytes, and at the start of every block. A range read starts at
+ * the last checkpoint before the range, reads only the compressed bytes the
+ * range can span and decodes at most interval bytes it does not return, so
+ * its latency depends on the interval and the range, not on the file size.
+ * Raw blocks of adaptive files are read as they are.
+ * <p>
+ * Building the index decodes the whole file once. It is kept in a file next
+ * to the container, named after it with the suffix SUFFIX, and is rebuilt
+ * when it does not match the container. The index is keyed on the
+ * container header and the checksums of the original data, which the
+ * header holds for every block and the trailer of version 1 for the whole
+ * file, so a container re-encoded from other data with the same code and
+ * size does not reuse a stale index. Ranges are not checked against these
+ * checksums, which cover whole blocks or files.
+ * <p>
+ * Index layout: magic number (4 bytes), format version (1 byte), size of the
+ * container file (8 bytes), CRC32C of the container header and of the
+ * version 1 trailer (4 bytes), interval (4 bytes), checkpoint count (4 bytes), (original position, bit
+ * position) pairs (16 bytes each).
+ */
+public class SeekableReader implements Closeable {
+
+	// general final variables
+	static final int MAGIC = 0x48554649; // "HUFI"
+	static final int VERSION = 2; // current index format version
+	static final String SUFFIX = ".idx"; // file name suffix of the index
+	static final int DEFAULT_INTERVAL = 1 << 16; // original bytes between checkpoints
+	private static final int MAX_READ = 1 << 24; // largest compressed span read into memory, larger ones are mapped
+
+	private final String file; // name of the container file
+	private final FileChannel ch; // the container file
+	private final Container header; // header of the container
+	private final int key; // CRC32C of the container header and the version 1 trailer, which the index must match
+
+	// segments of the original data: the whole file in version 1, or each block
+	private final long[] payloadStart; // position of the first payload byte of each segment in the file
+	private final long[] payloadEnd; // position after the last payload byte of each segment in the file
+	private final TableDecoder[] decoders; // decoder of each segment, null for raw blocks
+
+	// checkpoint index, sorted by original position
+	private int interval; // original bytes between checkpoints
+	private long[] pos = new long[0]; // original position of each checkpoint
+	private long[] bit = new long[0]; // bit position of each checkpoint in the file
+	private boolean built; // true if the index was built rather than loaded from its file
+
+	/**
+	 * Opens a container file for range reads with the default interval. The
+	 * index is loaded from its file, or built if it is missing or stale.
+	 *
+	 * @param file name of the container file
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the file is not a valid container
+	 */
+	public SeekableReader(String file) throws IOException {
+		this(file, DEFAULT_INTERVAL);
+	}
+
+	/**
+	 * Opens a container file for range reads. The index is loaded from its
+	 * file, or built with the given interval if it is missing or stale; an
+	 * index file with another interval is kept.
+	 *
+	 * @param file name of the container file
+	 * @param interval original bytes between checkpoints of a new index, at least 1
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the file is not a valid container
+	 */
+	public SeekableReader(String file, int interval) throws IOException {
+		if(interval < 1) throw new IllegalArgumentException("Illegal checkpoint interval " + interval);
+		this.file = file;
+		this.header = HuffmanSubmit.readHeader(file);
+		this.ch = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+		try {
+			CRC32C crc = new CRC32C();
+			crc.update(HuffmanSubmit.readBlock(ch, 0, (int) header.headerSize()));
+			if(header.version == Container.STREAM)
+				crc.update(HuffmanSubmit.readBlock(ch, header.headerSize() + header.payloadLength, Container.TRAILER_SIZE));
+			this.key = (int) crc.getValue();
+
+			// find the payload and decoder of every segment
+			int segments = header.version == Container.STREAM ? (header.length > 0 ? 1 : 0) : header.blockLength.length;
+			payloadStart = new long[segments];
+			payloadEnd = new long[segments];
+			decoders = new TableDecoder[segments];
+			if(header.version == Container.STREAM) {
+				if(segments > 0) {
+					payloadStart[0] = header.headerSize();
+					payloadEnd[0] = header.headerSize() + header.payloadLength;
+					decoders[0] = new TableDecoder(header.code);
+				}
+			} else {
+				long[] offset = new long[segments];
+				int[] skip = new int[segments];
+				long p = header.headerSize();
+				for(int b = 0; b < segments; b++) {
+					offset[b] = p;
+					p += header.blockLength[b];
+				}
+				if(header.version == Container.ADAPTIVE) HuffmanSubmit.blockDecoders(ch, header, offset, decoders, skip);
+				else Arrays.fill(decoders, new TableDecoder(header.code));
+				for(int b = 0; b < segments; b++) {
+					payloadStart[b] = offset[b] + skip[b];
+					payloadEnd[b] = offset[b] + header.blockLength[b];
+				}
+			}
+
+			if(!loadIndex()) {
+				buildIndex(interval);
+				built = true;
+			}
+		} catch(RuntimeException e) {
+			ch.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the number of bytes of the original data.
+	 *
+	 * @return original length
+	 */
+	public long length() {
+		return header.length;
+	}
+
+	/**
+	 * Returns whether the index was built when the reader was opened, because
+	 * its file was missing or stale, rather than loaded. A built index should
+	 * be saved with saveIndex.
+	 *
+	 * @return true if the index was built
+	 */
+	public boolean indexBuilt() {
+		return built;
+	}
+
+	/**
+	 * Decodes a range of the original data. Several threads may read ranges
+	 * of the same reader at once.
+	 *
+	 * @param offset position of the first byte in the original data
+	 * @param len number of bytes
+	 * @return the bytes of the range
+	 * @throws IllegalArgumentException if the range is outside the original data or the file is corrupt
+	 */
+	public byte[] read(long offset, int len) {
+		if(offset < 0 || len < 0 || offset > header.length - len)
+			throw new IllegalArgumentException("Range of " + len + " bytes at " + offset + " is outside " + header.length + " bytes");
+		byte[] out = new byte[len];
+		int done = 0;
+		while(done < len) {
+			long p = offset + done;
+			int s = header.version == Container.STREAM ? 0 : (int) (p / header.blockSize);
+			long segStart = header.version == Container.STREAM ? 0 : (long) s * header.blockSize;
+			long segLength = header.version == Container.STREAM ? header.length : header.blockBytes(s);
+			int n = (int) Math.min(len - done, segStart + segLength - p);
+
+			// raw blocks hold the original bytes
+			if(decoders[s] == null) {
+				byte[] raw = HuffmanSubmit.readBlock(ch, payloadStart[s] + (p - segStart), n);
+				System.arraycopy(raw, 0, out, done, n);
+				done += n;
+				continue;
+			}
+
+			// start at the last checkpoint before the range, which is in the same segment
+			int k = Arrays.binarySearch(pos, p);
+			if(k < 0) k = -k - 2;
+			long skip = p - pos[k];
+			long first = bit[k] >>> 3;
+			long span = ((skip + n) * decoders[s].maxLength() + (bit[k] & 7) + 7) / 8;
+			long readLen = Math.min(payloadEnd[s] - first, span);
+			BitReader br = readLen <= MAX_READ
+				? new BitReader(HuffmanSubmit.readBlock(ch, first, (int) readLen), 0, (int) readLen)
+				: new BitReader(ch, first, readLen);
+			try {
+				br.skipBits((int) (bit[k] & 7));
+				byte[] scratch = new byte[(int) Math.min(skip, interval)];
+				while(skip > 0) {
+					int m = (int) Math.min(skip, scratch.length);
+					decoders[s].decode(br, scratch, 0, m);
+					skip -= m;
+				}
+				decoders[s].decode(br, out, done, n);
+			} catch(NoSuchElementException e) {
+				throw new IllegalArgumentException("Block " + s + " of " + file + " is truncated", e);
+			}
+			done += n;
+		}
+		return out;
+	}
+
+	/**
+	 * Decodes the whole file once and records a checkpoint every interval
+	 * original bytes and at the start of every coded segment.
+	 */
+	private void buildIndex(int interval) {
+		this.interval = interval;
+		int count = 0;
+		long[] p = new long[16], b = new long[16];
+		byte[] scratch = new byte[(int) Math.min(interval, Math.max(1, header.length))];
+		for(int s = 0; s < decoders.length; s++) {
+			if(decoders[s] == null) continue;
+			long segStart = header.version == Container.STREAM ? 0 : (long) s * header.blockSize;
+			long segLength = header.version == Container.STREAM ? header.length : header.blockBytes(s);
+			BitReader br = new BitReader(ch, payloadStart[s], payloadEnd[s] - payloadStart[s]);
+			try {
+				for(long d = 0; d < segLength; d += interval) {
+					if(count == p.length) {
+						p = Arrays.copyOf(p, 2 * count);
+						b = Arrays.copyOf(b, 2 * count);
+					}
+					p[count] = segStart + d;
+					b[count++] = 8 * payloadStart[s] + br.position();
+					decoders[s].decode(br, scratch, 0, (int) Math.min(interval, segLength - d));
+				}
+			} catch(NoSuchElementException e) {
+				throw new IllegalArgumentException("Block " + s + " of " + file + " is truncated", e);
+			}
+		}
+		pos = Arrays.copyOf(p, count);
+		bit = Arrays.copyOf(b, count);
+	}
+
+	/**
+	 * Loads the index file if it exists and matches the container.
+	 *
+	 * @return true if the index was loaded
+	 */
+	private boolean loadIndex() {
+		File f = new File(file + SUFFIX);
+		if(!f.isFile() || f.length() < 4 + 1 + 8 + 4 + 4 + 4) return false;
+		try(InputStream is = new FileInputStream(f)) {
+			BinaryIn bi = new BinaryIn(is);
+			if(bi.readInt() != MAGIC || bi.readChar() != VERSION) return false;
+			if(bi.readLong() != ch.size() || bi.readInt() != key) return false;
+			int iv = bi.readInt(), count = bi.readInt();
+			if(iv < 1 || count < 0 || f.length() != 4 + 1 + 8 + 4 + 4 + 4 + 16L * count) return false;
+			long[] p = new long[count], b = new long[count];
+			for(int i = 0; i < count; i++) {
+				p[i] = bi.readLong();
+				b[i] = bi.readLong();
+				if(p[i] < 0 || p[i] >= header.length || (i > 0 && p[i] <= p[i-1]) || b[i] < 0 || b[i] >= 8 * ch.size()) return false;
+			}
+
+			// every coded segment must start with a checkpoint
+			for(int s = 0; s < decoders.length; s++)
+				if(decoders[s] != null && Arrays.binarySearch(p, header.version == Container.STREAM ? 0 : (long) s * header.blockSize) < 0) return false;
+			interval = iv;
+			pos = p;
+			bit = b;
+			return true;
+		} catch(NoSuchElementException | IOException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * Writes the index next to the container, so later readers do not have
+	 * to build it again.
+	 *
+	 * @throws IOException if the index file cannot be written
+	 */
+	public void saveIndex() throws IOException {
+		try(BufferedOutputStream os = new BufferedOutputStream(new FileOutputStream(file + SUFFIX))) {
+			BinaryOut bo = new BinaryOut(os);
+			bo.write(MAGIC);
+			bo.write((byte) VERSION);
+			bo.write(ch.size());
+			bo.write(key);
+			bo.write(interval);
+			bo.write(pos.length);
+			for(int i = 0; i < pos.length; i++) {
+				bo.write(pos[i]);
+				bo.write(bit[i]);
+			}
+			bo.flush();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		ch.close();
+	}
+}
@@ -0,0 +1,145 @@
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.NoSuchElementException;
+import java.util.zip.CRC32C;
+
+/**
+ * This class is a canonical code trained once on a sample corpus and shared
+ * by many small inputs, such as records or log lines, which are too short to
+ * pay for a code of their own. Every byte value gets a code, so inputs with
+ * bytes that never occur in the corpus can still be encoded. The records are
+ * written by the Encoder and read by the Decoder of the table, which are
+ * built once with the table and can be shared by any number of threads.
+ * <p>
+ * A table is saved under its id, the CRC32C of its code length header, in a
+ * file named after the id in hexadecimal with the suffix SUFFIX. An encoded
+ * record carries only the id of its table; see Encoder for its layout.
+ */
+public class SharedTable {
+
+	// general final variables
+	static final String SUFFIX = ".table"; // file name suffix of saved tables
+
+	final CanonicalCode code; // the shared code
+	private final Encoder encoder;
+	private final Decoder decoder;
+
+	// class constructor
+	SharedTable(CanonicalCode code) {
+		for(int s = 0; s < CanonicalCode.LIMIT; s++)
+			if(code.length[s] == 0) throw new IllegalArgumentException("Shared table has no code for byte " + s);
+		this.code = code;
+		this.encoder = new Encoder(code);
+		this.decoder = new Decoder(code);
+	}
+
+	/**
+	 * Builds a table from the byte frequencies of a sample corpus. Every
+	 * count is raised by one, so bytes missing from the corpus get the
+	 * longest codes instead of none.
+	 *
+	 * @param freq frequency of each byte value in the corpus
+	 * @param maxLength longest code length, between 8 and CanonicalCode.MAX_LENGTH
+	 * @return the trained table
+	 */
+	public static SharedTable train(long[] freq, int maxLength) {
+		long[] smoothed = new long[CanonicalCode.LIMIT];
+		for(int s = 0; s < CanonicalCode.LIMIT; s++) smoothed[s] = freq[s] + 1;
+		return new SharedTable(CanonicalCode.build(smoothed, maxLength));
+	}
+
+	/**
+	 * Returns the id of the table, which records encoded with it carry.
+	 *
+	 * @return id of the table
+	 */
+	public int id() {
+		return encoder.id();
+	}
+
+	/**
+	 * Returns the encoder of the table.
+	 *
+	 * @return the encoder, shared by every caller
+	 */
+	public Encoder encoder() {
+		return encoder;
+	}
+
+	/**
+	 * Returns the decoder of the table.
+	 *
+	 * @return the decoder, shared by every caller
+	 */
+	public Decoder decoder() {
+		return decoder;
+	}
+
+	/**
+	 * Saves the code length header of the table in dir, under its id.
+	 *
+	 * @param dir directory of the tables, created if missing
+	 * @return the saved file
+	 * @throws IOException if the file cannot be written
+	 */
+	public Path save(Path dir) throws IOException {
+		Files.createDirectories(dir);
+		Path file = dir.resolve(name(id()));
+		Files.write(file, headerBytes(code));
+		return file;
+	}
+
+	/**
+	 * Loads the table with the given id from dir.
+	 *
+	 * @param dir directory of the tables
+	 * @param id id of the table
+	 * @return the table
+	 * @throws IOException if the file cannot be read
+	 * @throws IllegalArgumentException if the file does not hold the table with this id
+	 */
+	public static SharedTable load(Path dir, int id) throws IOException {
+		byte[] header = Files.readAllBytes(dir.resolve(name(id)));
+		if(id(header) != id) throw new IllegalArgumentException(String.format("Table file %s does not match its id", name(id)));
+		try {
+			return new SharedTable(CanonicalCode.readHeader(new BinaryIn(new ByteArrayInputStream(header))));
+		} catch(NoSuchElementException e) {
+			throw new IllegalArgumentException("Table file " + name(id) + " is truncated", e);
+		}
+	}
+
+	/**
+	 * Returns the file name of the table with the given id.
+	 */
+	static String name(int id) {
+		return String.format("%08x", id) + SUFFIX;
+	}
+
+	/**
+	 * Returns the id of a code, the CRC32C of its code length header.
+	 */
+	static int id(CanonicalCode code) {
+		return id(headerBytes(code));
+	}
+
+	private static int id(byte[] header) {
+		CRC32C crc = new CRC32C();
+		crc.update(header, 0, header.length);
+		return (int) crc.getValue();
+	}
+
+	/**
+	 * Returns the code length header of a code as bytes.
+	 */
+	private static byte[] headerBytes(CanonicalCode code) {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(code.headerSize());
+		BinaryOut bo = new BinaryOut(bytes);
+		code.writeHeader(bo);
+		bo.flush();
+		return bytes.toByteArray();
+	}
+}
@@ -0,0 +1,250 @@
+
+import java.nio.ByteBuffer;
+import java.util.NoSuchElementException;
+import java.util.zip.Checksum;
+
+/**
+ * This class decodes Huffman encoded bits with a lookup table instead of
+ * walking the Huffman tree one bit at a time. Each lookup peeks TABLE_BITS
+ * bits and resolves up to two symbols at once. Codes longer than the table
+ * width fall back to walking the tree from the node the table stopped at,
+ * or to comparing against the first code of each length for canonical codes.
+ * Codes limited to CanonicalCode.DEFAULT_MAX_LENGTH bits never take the
+ * fallback.
+ */
+class TableDecoder {
+
+	// general final variables
+	static final int TABLE_BITS = 12; // number of bits resolved per table lookup, at most 15
+	private static final int TABLE_SIZE = 1 << TABLE_BITS;
+	private static final int OUT_SIZE = 1 << 16; // size of the output byte buffer of the stream decoder
+
+	// table entry layout:
+	// bits 0-7 first symbol, bits 8-15 second symbol, bits 16-19 length of first code,
+	// bits 20-24 total bits consumed, bits 25-26 number of symbols (0 means long code)
+	private final int[] table = new int[TABLE_SIZE];
+	private final HuffmanTree tree; // Huffman tree for long codes, null for canonical codes
+	private final int[] subtree; // node reached by a long code prefix, null for canonical codes
+	private final CanonicalCode canonical; // canonical code for long codes, null for trees
+
+	// class constructor for decoding with a Huffman tree
+	TableDecoder(HuffmanTree tree) {
+		this.tree = tree;
+		subtree = new int[TABLE_SIZE];
+		canonical = null;
+		for(int i = 0; i < TABLE_SIZE; i++) table[i] = entry(tree, i);
+		pairSymbols();
+	}
+
+	// class constructor for decoding a canonical code straight from its code lengths
+	TableDecoder(CanonicalCode code) {
+		tree = null;
+		subtree = null;
+		canonical = code;
+		for(int s = 0; s < CanonicalCode.LIMIT; s++) {
+			int len = code.length[s];
+			if(len == 0 || len > TABLE_BITS) continue;
+
+			// every index starting with the code resolves to the symbol
+			int start = (int) (code.code[s] << (TABLE_BITS - len));
+			for(int i = 0; i < 1 << (TABLE_BITS - len); i++)
+				table[start + i] = s | len << 16 | len << 20 | 1 << 25;
+		}
+		pairSymbols();
+	}
+
+	/**
+	 * Computes the single symbol table entry for the given TABLE_BITS bit prefix.
+	 *
+	 * @param tree the Huffman tree
+	 * @param index prefix of TABLE_BITS bits
+	 * @return packed table entry
+	 */
+	private int entry(HuffmanTree tree, int index) {
+		int curr = tree.root;
+		int used = 0;
+
+		// special case: a single symbol tree encodes each symbol as one bit
+		if(HuffmanTree.isLeaf(curr)) used = 1;
+
+		while(!HuffmanTree.isLeaf(curr) && used < TABLE_BITS) {
+			curr = bit(index, used++) ? tree.right[curr] : tree.left[curr];
+		}
+		if(!HuffmanTree.isLeaf(curr)) {
+			subtree[index] = curr;
+			return TABLE_BITS << 20;
+		}
+		return curr | used << 16 | used << 20 | 1 << 25;
+	}
+
+	/**
+	 * Extends single symbol entries with a second symbol whenever the code of
+	 * that symbol fits in the bits left over after the first one.
+	 */
+	private void pairSymbols() {
+		for(int i = 0; i < TABLE_SIZE; i++) {
+			int e = table[i];
+			if(e >>> 25 != 1) continue;
+			int len1 = (e >>> 16) & 0xf;
+			int next = table[(i << len1) & (TABLE_SIZE - 1)];
+			if(next >>> 25 == 0) continue;
+			int len2 = (next >>> 16) & 0xf;
+			if(len1 + len2 > TABLE_BITS) continue;
+			table[i] = (e & 0xff) | (next & 0xff) << 8 | len1 << 16 | (len1 + len2) << 20 | 2 << 25;
+		}
+	}
+
+	/**
+	 * Returns the n-th most significant bit of a TABLE_BITS bit prefix.
+	 */
+	private static boolean bit(int index, int n) {
+		return ((index >>> (TABLE_BITS - n - 1)) & 1) == 1;
+	}
+
+	/**
+	 * Checks whether the first len bits read form a complete canonical code.
+	 *
+	 * @param code bits read so far
+	 * @param len number of bits read so far
+	 * @return true if the bits are the code of a symbol; otherwise false
+	 * @throws IllegalArgumentException if no code of the canonical code starts with the bits
+	 */
+	private boolean isCanonical(long code, int len) {
+		if(len > canonical.maxLength) throw new IllegalArgumentException("Invalid code in encoded data");
+		return code - canonical.first[len] < canonical.count[len] && code >= canonical.first[len];
+	}
+
+	/**
+	 * Decodes exactly count symbols from the bit reader and writes them as
+	 * whole bytes to the binary output.
+	 *
+	 * @param br bit reader positioned at the first encoded bit
+	 * @param bo binary output for the decoded bytes
+	 * @param count number of symbols to decode
+	 * @param checksum checksum updated with the decoded bytes, or null
+	 * @throws NoSuchElementException if the input ends before count symbols
+	 */
+	void decode(BitReader br, BinaryOut bo, long count, Checksum checksum) {
+		byte[] out = new byte[(int) Math.min(OUT_SIZE, count)];
+		while(count > 0) {
+			int n = (int) Math.min(out.length, count);
+			decode(br, out, 0, n);
+			bo.write(out, 0, n);
+			if(checksum != null) checksum.update(out, 0, n);
+			count -= n;
+		}
+	}
+
+	/**
+	 * Decodes exactly len symbols from the bit reader into an array. The
+	 * decoder holds no state between calls, so several threads can decode
+	 * with the same decoder at once.
+	 *
+	 * @param br bit reader positioned at the first encoded bit
+	 * @param out array for the decoded bytes
+	 * @param off position of the first decoded byte in out
+	 * @param len number of symbols to decode
+	 * @throws NoSuchElementException if the input ends before len symbols
+	 */
+	void decode(BitReader br, byte[] out, int off, int len) {
+		int pos = off, end = off + len;
+
+		while(pos < end) {
+			int index = (int) br.peekBits(TABLE_BITS);
+			int e = table[index];
+			int n = e >>> 25;
+
+			// long code: resolve the rest one bit at a time
+			if(n == 0) {
+				br.skipBits(TABLE_BITS);
+				out[pos++] = (byte) decodeLong(br, index);
+				continue;
+			}
+
+			// short codes: emit one or two symbols from the table entry
+			if(n == 2 && pos + 1 < end) {
+				br.skipBits((e >>> 20) & 0x1f);
+				out[pos++] = (byte) e;
+				out[pos++] = (byte) (e >>> 8);
+			} else {
+				br.skipBits((e >>> 16) & 0xf);
+				out[pos++] = (byte) e;
+			}
+		}
+	}
+
+	/**
+	 * Decodes exactly len symbols from the bit reader into the buffer at its
+	 * position, which is advanced past them. Used to decode straight into
+	 * direct or memory-mapped buffers.
+	 *
+	 * @param br bit reader positioned at the first encoded bit
+	 * @param out buffer for the decoded bytes
+	 * @param len number of symbols to decode
+	 * @throws NoSuchElementException if the input ends before len symbols
+	 */
+	void decode(BitReader br, ByteBuffer out, int len) {
+		while(len > 0) {
+			int index = (int) br.peekBits(TABLE_BITS);
+			int e = table[index];
+			int n = e >>> 25;
+
+			// long code: resolve the rest one bit at a time
+			if(n == 0) {
+				br.skipBits(TABLE_BITS);
+				out.put((byte) decodeLong(br, index));
+				len--;
+				continue;
+			}
+
+			// short codes: emit one or two symbols from the table entry
+			if(n == 2 && len > 1) {
+				br.skipBits((e >>> 20) & 0x1f);
+				out.put((byte) e);
+				out.put((byte) (e >>> 8));
+				len -= 2;
+			} else {
+				br.skipBits((e >>> 16) & 0xf);
+				out.put((byte) e);
+				len--;
+			}
+		}
+	}
+
+	/**
+	 * Returns the longest code length of a canonical code, or
+	 * CanonicalCode.MAX_LENGTH for a Huffman tree, whose depth is not kept.
+	 *
+	 * @return upper bound on the number of bits per symbol
+	 */
+	int maxLength() {
+		return canonical != null ? canonical.maxLength : CanonicalCode.MAX_LENGTH;
+	}
+
+	/**
+	 * Decodes a code longer than TABLE_BITS whose first TABLE_BITS bits have
+	 * already been consumed.
+	 *
+	 * @param br bit reader positioned after the first TABLE_BITS bits of the code
+	 * @param index the first TABLE_BITS bits of the code
+	 * @return the decoded symbol
+	 */
+	private int decodeLong(BitReader br, int index) {
+
+		// walk the tree from the node the table stopped at
+		if(tree != null) {
+			int curr = subtree[index];
+			while(!HuffmanTree.isLeaf(curr)) curr = br.readBit() ? tree.right[curr] : tree.left[curr];
+			return curr;
+		}
+
+		// extend the code until it matches a canonical code of its length
+		long code = index;
+		int len = TABLE_BITS;
+		while(!isCanonical(code, len)) {
+			code = code << 1 | (br.readBit() ? 1 : 0);
+			len++;
+		}
+		return canonical.sorted[canonical.offset[len] + (int) (code - canonical.first[len])];
+	}
+}
@@ -0,0 +1,120 @@
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import javax.swing.SwingUtilities;
+import javax.swing.Timer;
+
+/**
+ * This class shows the generation of a Huffman tree in a separate window.
+ * The thread building the tree only puts immutable events into a bounded
+ * queue and never waits: a Swing timer takes one event per frame, every
+ * DELAY milliseconds, and rebuilds the forest on the event dispatch thread,
+ * which is the only thread touching the displayed nodes. When the display
+ * falls behind by more than QUEUE_SIZE events, the rest of the current tree
+ * is dropped instead of slowing down the codec.
+ * <p>
+ * The window is only created when the first tree starts, so no AWT classes
+ * are loaded unless a display is actually attached to the codec.
+ */
+class TreeDisplay implements TreeObserver {
+	
+	// general final variables
+	private static final int QUEUE_SIZE = 4096; // events waiting for display, enough for several full trees
+	
+	// miscellaneous variables
+	protected static int DELAY = 100; // ms delay between each frame of animated tree generation display
+	private final BlockingQueue<TreeEvent> events = new ArrayBlockingQueue<TreeEvent>(QUEUE_SIZE);
+	private boolean opened; // true once the window is requested, building thread only
+	private boolean dropping; // true while events of the current tree are dropped, building thread only
+	
+	// display state, event dispatch thread only
+	private Frame F; // JFrame for tree display
+	private Timer timer; // takes one event per frame
+	private List<Node> forest; // roots of the displayed forest
+	private Node[] nodes; // displayed nodes by id
+	private String title; // title of the displayed tree
+	private int iter; // number of merges displayed
+	
+	@Override
+	public void start(String title, long[] freq) {
+		if(!opened) {
+			opened = true;
+			SwingUtilities.invokeLater(this::open);
+		}
+		dropping = false;
+		offer(TreeEvent.start(title, freq));
+	}
+	
+	@Override
+	public void merge(int id, int left, int right, long freq) {
+		if(!dropping) offer(TreeEvent.merge(id, left, right, freq));
+	}
+	
+	@Override
+	public void end() {
+		offer(TreeEvent.end());
+	}
+	
+	/**
+	 * Queues an event without waiting, and drops the rest of the current tree
+	 * if the queue is full.
+	 */
+	private void offer(TreeEvent e) {
+		if(!events.offer(e)) dropping = true;
+	}
+	
+	/**
+	 * Creates the window and starts taking events at the display rate.
+	 */
+	private void open() {
+		F = new Frame();
+		timer = new Timer(DELAY, e -> next());
+		timer.start();
+	}
+	
+	/**
+	 * Applies the next queued event, if any, to the displayed forest and
+	 * follows the frame rate chosen in the window.
+	 */
+	private void next() {
+		timer.setDelay(DELAY);
+		TreeEvent e = events.poll();
+		if(e == null) return;
+		
+		if(e.type == TreeEvent.START) {
+			
+			// a new forest with one leaf per used symbol
+			forest = new ArrayList<Node>();
+			nodes = new Node[2 * e.leafFreq.length - 1];
+			for(int i = 0; i < e.leafFreq.length; i++) {
+				if(e.leafFreq[i] == 0) continue;
+				nodes[i] = new Node(i, e.leafFreq[i]);
+				forest.add(nodes[i]);
+			}
+			title = e.title;
+			iter = 0;
+			F.showComponents();
+			
+		} else if(e.type == TreeEvent.MERGE) {
+			
+			// replace the two roots by their parent, skipping trees whose start was dropped
+			if(nodes == null || nodes[e.left] == null || nodes[e.right] == null) return;
+			Node left = nodes[e.left], right = nodes[e.right];
+			nodes[e.id] = new Node(e.freq, left, right);
+			int i = forest.indexOf(left), j = forest.indexOf(right);
+			forest.set(Math.min(i, j), nodes[e.id]);
+			forest.remove(Math.max(i, j));
+			iter += 1;
+			
+		} else {
+			F.hideComponents();
+			nodes = null;
+		}
+		
+		F.updateContent(forest, "[" + title + "] Running iteration #" + iter);
+		F.update();
+	}
+}
@@ -0,0 +1,49 @@
+
+/**
+ * This class holds a single step of a Huffman tree generation, as passed
+ * from the thread building the tree to a display. Events are immutable, so
+ * they can be handed between threads without sharing any tree.
+ */
+final class TreeEvent {
+	
+	// event types
+	static final int START = 0, MERGE = 1, END = 2;
+	
+	final int type; // one of START, MERGE and END
+	final String title; // title of the tree, START only
+	final long[] leafFreq; // frequency of each symbol, START only
+	final int id, left, right; // ids of the new node and its children, MERGE only
+	final long freq; // frequency of the new node, MERGE only
+	
+	// class constructor
+	private TreeEvent(int type, String title, long[] leafFreq, int id, int left, int right, long freq) {
+		this.type = type;
+		this.title = title;
+		this.leafFreq = leafFreq;
+		this.id = id;
+		this.left = left;
+		this.right = right;
+		this.freq = freq;
+	}
+	
+	/**
+	 * Returns the event starting a tree.
+	 */
+	static TreeEvent start(String title, long[] freq) {
+		return new TreeEvent(START, title, freq.clone(), -1, -1, -1, 0);
+	}
+	
+	/**
+	 * Returns the event of a merge of two roots.
+	 */
+	static TreeEvent merge(int id, int left, int right, long freq) {
+		return new TreeEvent(MERGE, null, null, id, left, right, freq);
+	}
+	
+	/**
+	 * Returns the event completing a tree.
+	 */
+	static TreeEvent end() {
+		return new TreeEvent(END, null, null, -1, -1, -1, 0);
+	}
+}
@@ -0,0 +1,37 @@
+
+/**
+ * This interface listens to the generation of a Huffman tree. The encoder
+ * and decoder work without any observer; an observer is only attached when
+ * the tree generation should be shown, so the codec itself never depends on
+ * a user interface.
+ * <p>
+ * Nodes are identified by ids instead of being shared: leaf ids are their
+ * symbols, from 0 to LIMIT-1, and merged nodes get ids from LIMIT upward in
+ * order of creation. The methods are called on the thread building the tree
+ * and must return quickly, since the codec waits for them.
+ */
+interface TreeObserver {
+	
+	/**
+	 * Called before the first merge, with one leaf for every used symbol.
+	 * 
+	 * @param title title describing the tree being built
+	 * @param freq frequency of each symbol, 0 for unused symbols; not modified later
+	 */
+	void start(String title, long[] freq);
+	
+	/**
+	 * Called after every merge of two roots.
+	 * 
+	 * @param id id of the new internal node
+	 * @param left id of its left child
+	 * @param right id of its right child
+	 * @param freq frequency of the new internal node
+	 */
+	void merge(int id, int left, int right, long freq);
+	
+	/**
+	 * Called once the tree is complete.
+	 */
+	void end();
+}
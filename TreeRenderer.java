@@ -0,0 +1,207 @@
+
+import java.awt.Color;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.List;
+
+/**
+ * This class draws a forest of Huffman trees. The position of every node is
+ * computed once per change of the forest and kept in flat arrays, so drawing
+ * does not walk the trees again. Nodes below the bottom
+ * of the drawing area are culled with their whole subtree, and levels with
+ * more nodes than fit next to each other are drawn as dots without labels,
+ * with branches and dots that fall on the same pixels drawn only once, so
+ * forests of large alphabets stay cheap to draw.
+ */
+class TreeRenderer {
+
+	// drawing area
+	static final int LEFT = 20, TOP = 120, RIGHT = 1280, BOTTOM = 780;
+	private static final int LEVEL_HEIGHT = 25; // vertical distance between a node and its children
+	private static final int CUT_LENGTH = 4; // length of the mark below a node with culled children
+
+	// color presets
+	private static final Color LEAF = Color.green, LEAF_TRANSLUCENT = new Color(0,255,0,63);
+	private static final Color INTERNAL = Color.yellow, INTERNAL_TRANSLUCENT = new Color(255,255,0,63);
+	private static final Color BRANCH = Color.black, BRANCH_TRANSLUCENT = new Color(0,0,0,63);
+
+	// layout of the visible nodes in preorder
+	private int n; // number of visible nodes
+	private int[] x = new int[64], y = new int[64]; // position of each node
+	private int[] parent = new int[64]; // index of the parent of each node, -1 for roots
+	private int[] depth = new int[64]; // depth of each node below its root
+	private int[] symbol = new int[64]; // symbol of each leaf, -1 for internal nodes
+	private long[] freq = new long[64]; // frequency of each node
+	private boolean[] cut = new boolean[64]; // true if the children of a node are culled
+	private int[] levelCount = new int[0]; // number of visible nodes at each depth
+	private int rootY; // y-coordinate of the tree roots
+
+	/**
+	 * Computes the position of every visible node of the forest. The roots
+	 * are spread around x, and branches get narrower with each level.
+	 *
+	 * @param forest list of Huffman tree roots, or null
+	 * @param x0 x-coordinate of the center tree root
+	 * @param y0 y-coordinate of the tree roots
+	 */
+	void layout(List<Node> forest, int x0, int y0) {
+		n = 0;
+		rootY = y0;
+		Arrays.fill(levelCount, 0);
+		if(forest == null) return;
+
+		Node[] stack = new Node[64];
+		int[] stackX = new int[64], stackParent = new int[64];
+		for(int t = 0; t < forest.size(); t++) {
+			int size = forest.size();
+			stack[0] = forest.get(t);
+			stackX[0] = x0 + (int) (x0 * (-size/2 + t)/(double) size);
+			stackParent[0] = -1;
+			int top = 1;
+
+			// walk the tree in preorder without recursion, so deep trees are fine
+			while(top > 0) {
+				top--;
+				Node node = stack[top];
+				int i = add(node, stackX[top], stackParent[top]);
+				if(node.isLeaf()) continue;
+				if(y[i] + LEVEL_HEIGHT > BOTTOM) {
+					cut[i] = true;
+					continue;
+				}
+				if(top + 2 > stack.length) {
+					int grown = 2 * stack.length;
+					stack = Arrays.copyOf(stack, grown);
+					stackX = Arrays.copyOf(stackX, grown);
+					stackParent = Arrays.copyOf(stackParent, grown);
+				}
+				int dx = spread(y[i]);
+				if(node.right != null) {
+					stack[top] = node.right;
+					stackX[top] = x[i] + dx;
+					stackParent[top++] = i;
+				}
+				if(node.left != null) {
+					stack[top] = node.left;
+					stackX[top] = x[i] - dx;
+					stackParent[top++] = i;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds a node to the layout.
+	 *
+	 * @return index of the node
+	 */
+	private int add(Node node, int nodeX, int p) {
+		if(n == x.length) {
+			int size = 2 * n;
+			x = Arrays.copyOf(x, size);
+			y = Arrays.copyOf(y, size);
+			parent = Arrays.copyOf(parent, size);
+			depth = Arrays.copyOf(depth, size);
+			symbol = Arrays.copyOf(symbol, size);
+			freq = Arrays.copyOf(freq, size);
+			cut = Arrays.copyOf(cut, size);
+		}
+		int i = n++;
+		x[i] = nodeX;
+		y[i] = p < 0 ? rootY : y[p] + LEVEL_HEIGHT;
+		parent[i] = p;
+		depth[i] = p < 0 ? 0 : depth[p] + 1;
+		symbol[i] = node.isLeaf() ? node.symbol : -1;
+		freq[i] = node.freq;
+		cut[i] = false;
+		if(depth[i] >= levelCount.length) levelCount = Arrays.copyOf(levelCount, depth[i] + 16);
+		levelCount[depth[i]]++;
+		return i;
+	}
+
+	/**
+	 * Returns the horizontal distance between a node at height y and each of
+	 * its children.
+	 */
+	private static int spread(int y) {
+		if(y > 270) return 7;
+		return (int) (225*Math.pow(1.75, -Math.abs(120-y)/20));
+	}
+
+	/**
+	 * Checks whether a key is seen for the first time at the given depth, and
+	 * marks it as seen. Keys far outside the drawing area always count as new.
+	 *
+	 * @return true if the key was not seen before at this depth
+	 */
+	private static boolean firstAt(BitSet[] seen, int d, int key) {
+		if(key < 0 || key >= 4 * RIGHT) return true;
+		if(seen[d] == null) seen[d] = new BitSet(4 * RIGHT);
+		if(seen[d].get(key)) return false;
+		seen[d].set(key);
+		return true;
+	}
+
+	/**
+	 * Draws the laid out forest.
+	 *
+	 * @param g graphics to draw on, with the font for the node labels set
+	 * @param showLeafFreq display data frequency in leaves
+	 * @param hideInternalNodes hide internal nodes
+	 * @param translucent translucent branches
+	 * @param binary data display in binary
+	 */
+	void draw(Graphics2D g, boolean showLeafFreq, boolean hideInternalNodes, boolean translucent, boolean binary) {
+		FontMetrics fm = g.getFontMetrics();
+		int height = fm.getHeight();
+
+		// levels too crowded for labels are drawn as dots
+		int minWidth = Math.max(1, g.getFont().getSize());
+		boolean[] dense = new boolean[levelCount.length];
+		for(int d = 0; d < levelCount.length; d++) dense[d] = (long) levelCount[d] * minWidth > RIGHT - LEFT;
+
+		// draw all branches first, then the nodes on top of them;
+		// deep levels put many branches on the same pixels, and each is drawn once
+		BitSet[] seen = new BitSet[levelCount.length];
+		g.setColor(translucent ? BRANCH_TRANSLUCENT : BRANCH);
+		for(int i = 0; i < n; i++) {
+			if(parent[i] >= 0 && firstAt(seen, depth[i], 2 * x[parent[i]] + (x[i] > x[parent[i]] ? 1 : 0)))
+				g.drawLine(x[parent[i]], y[parent[i]], x[i], y[i]);
+			if(cut[i]) g.drawLine(x[i], y[i], x[i], y[i] + CUT_LENGTH);
+		}
+		Arrays.fill(seen, null);
+
+		// children before parents, as the recursive drawing did
+		for(int i = n - 1; i >= 0; i--) {
+			boolean leaf = symbol[i] >= 0;
+			if(!leaf && hideInternalNodes) continue;
+			if(x[i] < LEFT || x[i] > RIGHT) continue;
+			Color fill = leaf ? (translucent ? LEAF_TRANSLUCENT : LEAF) : (translucent ? INTERNAL_TRANSLUCENT : INTERNAL);
+			if(dense[depth[i]]) {
+				if(!firstAt(seen, depth[i], 2 * x[i] + (leaf ? 1 : 0))) continue;
+				g.setColor(fill);
+				g.fillRect(x[i]-1, y[i]-1, 2, 2);
+				continue;
+			}
+
+			// setting the label and getting its dimensions
+			String text;
+			if(!leaf) text = Long.toString(freq[i]);
+			else {
+				text = binary ? Integer.toBinaryString(symbol[i]) : String.valueOf((char) symbol[i]);
+				if(showLeafFreq) text += ":" + freq[i];
+			}
+			int width = fm.stringWidth(text);
+
+			// draw node
+			g.setColor(fill);
+			g.fillRect(x[i]-width/2-1, y[i]-height/2-1, width+2, height+2);
+			g.setColor(translucent ? BRANCH_TRANSLUCENT : BRANCH);
+			g.drawRect(x[i]-width/2-1, y[i]-height/2-1, width+2, height+2);
+			g.setColor(Color.black);
+			g.drawString(text, x[i]-width/2, y[i]+height/2);
+		}
+	}
+}